@@ -12,6 +12,7 @@ import org.lwjgl.system.MemoryStack;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 
+import static lib.gl.RenderSystem.gl;
 import static org.lwjgl.system.MemoryUtil.NULL;
 
 public class Window {
@@ -93,16 +94,16 @@ public class Window {
     public void show() {
         GLFW.glfwShowWindow(handle);
 
-        GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
-        GL11.glEnable(GL11.GL_BLEND);
+        gl().glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        gl().glEnable(GL11.GL_BLEND);
         clearColor();
 
         long lastFrameTime = System.nanoTime();
-        GL11.glViewport(0, 0, width, height);
+        gl().glViewport(0, 0, width, height);
 
         while (!GLFW.glfwWindowShouldClose(handle)) {
             GLFW.glfwPollEvents();
-            GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
+            gl().glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
 
             long frameStartTime = System.nanoTime();
             long duration = frameStartTime - lastFrameTime;
@@ -112,14 +113,16 @@ public class Window {
 
             timer.tick(elapsed);
 
-            GL11.glMatrixMode(GL11.GL_MODELVIEW);
-            GL11.glPushMatrix();
-            GL11.glOrtho(0, width, height, 0, 100, 300);
-            GL11.glTranslatef(0, 0, -200);
+            gl().glMatrixMode(GL11.GL_MODELVIEW);
+            gl().glPushMatrix();
+            gl().glOrtho(0, width, height, 0, 100, 300);
+            gl().glTranslatef(0, 0, -200);
 
             onFrame(elapsed);
+            canvas.getTessellator().endFrame();
+            gl().endFrame();
 
-            GL11.glPopMatrix();
+            gl().glPopMatrix();
 
             GLFW.glfwSwapBuffers(handle);
         }
@@ -129,7 +132,7 @@ public class Window {
     }
 
     protected void clearColor() {
-        GL11.glClearColor(1F, 1F, 1F, 0F);
+        gl().glClearColor(1F, 1F, 1F, 0F);
     }
 
     protected void onKeyButton(int key, int scancode, int action, int mods) {
@@ -1,18 +1,20 @@
 package lib.buffer;
 
 import lib.math.RenderMaths;
+import lib.vertex.DefaultVertexFormats;
 import lib.vertex.VertexFormat;
 import lib.vertex.VertexFormatElement;
+import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.Arrays;
-import java.util.BitSet;
 
 public class BufferBuilder {
     private ByteBuffer byteBuffer;
+    private long address;
     private IntBuffer rawIntBuffer;
     private FloatBuffer rawFloatBuffer;
     private int vertexCount;
@@ -25,11 +27,38 @@ public class BufferBuilder {
     private double zOffset;
     private VertexFormat vertexFormat;
     private boolean isDrawing;
+    private int[] expandScratch = new int[0];
+    private IntBuffer indexBuffer;
+    private int indexCount;
+    private boolean indexed;
+    private ByteBuffer sortBuffer;
+    private IntBuffer sortIntBuffer;
+    private FloatBuffer sortFloatBuffer;
+    private int[] sortKeys = new int[0];
+    private int[] sortKeysSwap = new int[0];
+    private int[] sortIndexes = new int[0];
+    private int[] sortIndexesSwap = new int[0];
+    private final int[] sortCounts = new int[4 * 256];
+    private final int initialCapacity;
+    private int maxCapacity = Integer.MAX_VALUE - 8;
+    private int shrinkAfter;
+    private int idleDraws;
+    private int recentPeak;
+    private int growEvents;
+    private long bytesCopied;
+    private int peakCapacity;
 
     public BufferBuilder(int capacity) {
-        this.byteBuffer = ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder());
-        this.rawIntBuffer = byteBuffer.asIntBuffer();
-        this.rawFloatBuffer = byteBuffer.asFloatBuffer();
+        this.initialCapacity = capacity * 4;
+        this.peakCapacity = this.initialCapacity;
+        this.setStorage(MemoryUtil.memAlloc(this.initialCapacity));
+    }
+
+    private void setStorage(ByteBuffer storage) {
+        this.byteBuffer = storage;
+        this.address = MemoryUtil.memAddress(storage, 0);
+        this.rawIntBuffer = this.byteBuffer.asIntBuffer();
+        this.rawFloatBuffer = this.byteBuffer.asFloatBuffer().asReadOnlyBuffer();
     }
 
     private static float getDistanceSq(FloatBuffer buf, float x, float y, float z, int integerSize, int offset) {
@@ -54,70 +83,225 @@ public class BufferBuilder {
     private void growBuffer(int increaseAmount) {
         if (RenderMaths.roundUp(increaseAmount, 4) / 4 > this.rawIntBuffer.remaining() || this.vertexCount * this.vertexFormat.getByteSize() + increaseAmount > this.byteBuffer.capacity()) {
             int oldCapacity = this.byteBuffer.capacity();
-            int newCapacity = oldCapacity + RenderMaths.roundUp(increaseAmount, 0x200000);
-            System.out.println("Needed to grow BufferBuilder buffer: Old size " + oldCapacity + " bytes, new size " + newCapacity + " bytes.");
             int currentVertex = this.rawIntBuffer.position();
-            ByteBuffer replacement = ByteBuffer.allocateDirect(newCapacity).order(ByteOrder.nativeOrder());
-            this.byteBuffer.position(0);
-            replacement.put(this.byteBuffer);
-            replacement.rewind();
-            this.byteBuffer = replacement;
-            this.rawFloatBuffer = this.byteBuffer.asFloatBuffer().asReadOnlyBuffer();
-            this.rawIntBuffer = this.byteBuffer.asIntBuffer();
+            int used = Math.min(oldCapacity, this.vertexCount * this.vertexFormat.getByteSize());
+            long required = (long) Math.max(used, currentVertex * 4) + RenderMaths.roundUp(increaseAmount, 4);
+
+            if (required > this.maxCapacity) {
+                throw new IllegalStateException("BufferBuilder needs " + required + " bytes, which exceeds its limit of " + this.maxCapacity + " bytes");
+            }
+
+            int newCapacity = (int) Math.min(this.maxCapacity, Math.max((long) oldCapacity * 2, required));
+            ByteBuffer replacement = MemoryUtil.memAlloc(newCapacity);
+            MemoryUtil.memCopy(MemoryUtil.memAddress(this.byteBuffer, 0), MemoryUtil.memAddress(replacement, 0), used);
+            MemoryUtil.memFree(this.byteBuffer);
+            this.setStorage(replacement);
             this.rawIntBuffer.position(currentVertex);
+            this.freeSortBuffer();
+
+            ++this.growEvents;
+            this.bytesCopied += used;
+            this.peakCapacity = Math.max(this.peakCapacity, newCapacity);
         }
     }
 
-    public void sortVertexData(float cameraX, float cameraY, float cameraZ) {
-        int i = this.vertexCount / 4;
-        final float[] distances = new float[i];
+    /**
+     * Shrinks the storage back towards the initial capacity once enough consecutive draws used less than a quarter of it.
+     * Only called between draws, when the contents of the buffer no longer matter.
+     */
+    private void shrinkIfIdle() {
+        int capacity = this.byteBuffer.capacity();
+
+        if (this.shrinkAfter > 0 && this.idleDraws >= this.shrinkAfter && capacity > this.initialCapacity) {
+            int newCapacity = Math.max(this.initialCapacity, Integer.highestOneBit(Math.max(1, this.recentPeak)) << 1);
 
-        for (int j = 0; j < i; ++j) {
-            distances[j] = getDistanceSq(this.rawFloatBuffer, (float) ((double) cameraX + this.xOffset), (float) ((double) cameraY + this.yOffset), (float) ((double) cameraZ + this.zOffset), this.vertexFormat.getIntegerSize(), j * this.vertexFormat.getByteSize());
+            if (newCapacity < capacity) {
+                MemoryUtil.memFree(this.byteBuffer);
+                this.setStorage(MemoryUtil.memAlloc(newCapacity));
+                this.freeSortBuffer();
+            }
+
+            this.idleDraws = 0;
+            this.recentPeak = 0;
         }
+    }
 
-        Integer[] indexes = new Integer[i];
+    private void freeSortBuffer() {
+        if (this.sortBuffer != null) {
+            MemoryUtil.memFree(this.sortBuffer);
+            this.sortBuffer = null;
+            this.sortIntBuffer = null;
+            this.sortFloatBuffer = null;
+        }
+    }
 
-        for (int k = 0; k < indexes.length; ++k) {
-            indexes[k] = k;
+    /**
+     * Releases the off-heap storage of this builder. It must not be used afterwards.
+     */
+    public void free() {
+        this.freeSortBuffer();
+        if (this.indexBuffer != null) {
+            MemoryUtil.memFree(this.indexBuffer);
+            this.indexBuffer = null;
         }
+        MemoryUtil.memFree(this.byteBuffer);
+        this.byteBuffer = null;
+        this.address = 0;
+        this.rawIntBuffer = null;
+        this.rawFloatBuffer = null;
+    }
 
-        Arrays.sort(indexes, (a, b) -> Float.compare(distances[b], distances[a]));
-        BitSet bitset = new BitSet();
-        int l = this.vertexFormat.getByteSize();
-        int[] aint = new int[l];
+    /**
+     * Limits how large the storage may grow, in bytes. Growing beyond it throws an IllegalStateException.
+     */
+    public void setMaxCapacity(int maxCapacity) {
+        this.maxCapacity = maxCapacity;
+    }
 
-        for (int i1 = bitset.nextClearBit(0); i1 < indexes.length; i1 = bitset.nextClearBit(i1 + 1)) {
-            int j1 = indexes[i1];
+    /**
+     * Enables shrinking the storage after the given number of consecutive draws that used less than a quarter of it; 0 disables.
+     */
+    public void setShrinkAfter(int draws) {
+        this.shrinkAfter = draws;
+    }
 
-            if (j1 != i1) {
-                this.rawIntBuffer.limit(j1 * l + l);
-                this.rawIntBuffer.position(j1 * l);
-                this.rawIntBuffer.get(aint);
-                int k1 = j1;
+    public int getCapacity() {
+        return this.byteBuffer.capacity();
+    }
 
-                for (int l1 = indexes[j1]; k1 != i1; l1 = indexes[l1]) {
-                    this.rawIntBuffer.limit(l1 * l + l);
-                    this.rawIntBuffer.position(l1 * l);
-                    IntBuffer intbuffer = this.rawIntBuffer.slice();
-                    this.rawIntBuffer.limit(k1 * l + l);
-                    this.rawIntBuffer.position(k1 * l);
-                    this.rawIntBuffer.put(intbuffer);
-                    bitset.set(k1);
-                    k1 = l1;
-                }
+    public int getGrowEvents() {
+        return this.growEvents;
+    }
 
-                this.rawIntBuffer.limit(i1 * l + l);
-                this.rawIntBuffer.position(i1 * l);
-                this.rawIntBuffer.put(aint);
-            }
+    public long getBytesCopied() {
+        return this.bytesCopied;
+    }
+
+    public int getPeakCapacity() {
+        return this.peakCapacity;
+    }
 
-            bitset.set(i1);
+    public void sortVertexData(float cameraX, float cameraY, float cameraZ) {
+        int quads = this.vertexCount / 4;
+        int quadInts = this.vertexFormat.getByteSize();
+        float x = (float) ((double) cameraX + this.xOffset);
+        float y = (float) ((double) cameraY + this.yOffset);
+        float z = (float) ((double) cameraZ + this.zOffset);
+
+        if (this.sortKeys.length < quads) {
+            this.sortKeys = new int[quads];
+            this.sortKeysSwap = new int[quads];
+            this.sortIndexes = new int[quads];
+            this.sortIndexesSwap = new int[quads];
+        }
+
+        /* Farthest quads first: invert the order-preserving bit pattern of the distance so an ascending sort yields descending distances */
+        for (int j = 0; j < quads; ++j) {
+            float distance = getDistanceSq(this.rawFloatBuffer, x, y, z, this.vertexFormat.getIntegerSize(), j * quadInts);
+            int bits = Float.floatToIntBits(distance);
+            this.sortKeys[j] = ~(bits ^ (bits >> 31 | 0x80000000));
+            this.sortIndexes[j] = j;
         }
+
+        this.radixSort(quads);
+
+        if (this.sortBuffer == null || this.sortBuffer.capacity() != this.byteBuffer.capacity()) {
+            this.freeSortBuffer();
+            this.sortBuffer = MemoryUtil.memAlloc(this.byteBuffer.capacity());
+            this.sortIntBuffer = this.sortBuffer.asIntBuffer();
+            this.sortFloatBuffer = this.sortBuffer.asFloatBuffer().asReadOnlyBuffer();
+        }
+
+        long source = MemoryUtil.memAddress(this.byteBuffer, 0);
+        long target = MemoryUtil.memAddress(this.sortBuffer, 0);
+        int quadBytes = quadInts * 4;
+
+        for (int j = 0; j < quads; ++j) {
+            MemoryUtil.memCopy(source + (long) this.sortIndexes[j] * quadBytes, target + (long) j * quadBytes, quadBytes);
+        }
+
+        /* Vertices that do not form a complete quad stay at the end */
+        long sorted = (long) quads * quadBytes;
+        MemoryUtil.memCopy(source + sorted, target + sorted, (long) this.vertexCount * this.vertexFormat.getByteSize() - sorted);
+
+        this.sortBuffer.limit(this.byteBuffer.limit());
+        this.sortBuffer.position(this.byteBuffer.position());
+
+        ByteBuffer byteBuffer = this.byteBuffer;
+        IntBuffer intBuffer = this.rawIntBuffer;
+        FloatBuffer floatBuffer = this.rawFloatBuffer;
+        this.byteBuffer = this.sortBuffer;
+        this.address = target;
+        this.rawIntBuffer = this.sortIntBuffer;
+        this.rawFloatBuffer = this.sortFloatBuffer;
+        this.sortBuffer = byteBuffer;
+        this.sortIntBuffer = intBuffer;
+        this.sortFloatBuffer = floatBuffer;
+
         this.rawIntBuffer.limit(this.rawIntBuffer.capacity());
         this.rawIntBuffer.position(this.getBufferSize());
     }
 
+    /**
+     * Stable LSD radix sort of sortIndexes by sortKeys, one byte per pass. Passes where every key shares the same byte are
+     * skipped, which is common for distances of similar magnitude.
+     */
+    private void radixSort(int count) {
+        if (count < 2) {
+            return;
+        }
+
+        int[] counts = this.sortCounts;
+        Arrays.fill(counts, 0);
+
+        for (int i = 0; i < count; ++i) {
+            int key = this.sortKeys[i];
+            ++counts[key & 255];
+            ++counts[256 + (key >>> 8 & 255)];
+            ++counts[512 + (key >>> 16 & 255)];
+            ++counts[768 + (key >>> 24)];
+        }
+
+        int[] keys = this.sortKeys;
+        int[] indexes = this.sortIndexes;
+        int[] keysSwap = this.sortKeysSwap;
+        int[] indexesSwap = this.sortIndexesSwap;
+
+        for (int pass = 0; pass < 4; ++pass) {
+            int base = pass * 256;
+            int shift = pass * 8;
+
+            if (counts[base + (keys[0] >>> shift & 255)] == count) {
+                continue;
+            }
+
+            for (int i = 0, sum = 0; i < 256; ++i) {
+                int c = counts[base + i];
+                counts[base + i] = sum;
+                sum += c;
+            }
+
+            for (int i = 0; i < count; ++i) {
+                int key = keys[i];
+                int slot = counts[base + (key >>> shift & 255)]++;
+                keysSwap[slot] = key;
+                indexesSwap[slot] = indexes[i];
+            }
+
+            int[] tmp = keys;
+            keys = keysSwap;
+            keysSwap = tmp;
+            tmp = indexes;
+            indexes = indexesSwap;
+            indexesSwap = tmp;
+        }
+
+        this.sortKeys = keys;
+        this.sortIndexes = indexes;
+        this.sortKeysSwap = keysSwap;
+        this.sortIndexesSwap = indexesSwap;
+    }
+
     public BufferBuilder.State getVertexState() {
         this.rawIntBuffer.rewind();
         int i = this.getBufferSize();
@@ -143,6 +327,8 @@ public class BufferBuilder {
 
     public void reset() {
         this.vertexCount = 0;
+        this.indexCount = 0;
+        this.indexed = false;
         this.vertexFormatElement = null;
         this.vertexFormatIndex = 0;
     }
@@ -153,6 +339,7 @@ public class BufferBuilder {
         } else {
             this.isDrawing = true;
             this.reset();
+            this.shrinkIfIdle();
             this.drawMode = glMode;
             this.vertexFormat = format;
             this.vertexFormatElement = format.getElement(this.vertexFormatIndex);
@@ -363,6 +550,245 @@ public class BufferBuilder {
         this.vertexCount += data.length / this.vertexFormat.getIntegerSize();
     }
 
+    /*
+     * Format-specialized writers. Each one writes a complete vertex of a fixed DefaultVertexFormats layout straight to the
+     * storage, without walking the format elements, and must only be used while building that format. Like color(), they
+     * leave the color untouched after noColor().
+     */
+
+    /**
+     * Writes a {@link DefaultVertexFormats#POSITION} vertex.
+     */
+    public void vertex(double x, double y, double z) {
+        assert DefaultVertexFormats.POSITION.equals(this.vertexFormat);
+        long pointer = this.address + this.vertexCount * 12L;
+        MemoryUtil.memPutFloat(pointer, (float) (x + this.xOffset));
+        MemoryUtil.memPutFloat(pointer + 4, (float) (y + this.yOffset));
+        MemoryUtil.memPutFloat(pointer + 8, (float) (z + this.zOffset));
+        this.nextVertex(12);
+    }
+
+    /**
+     * Writes a {@link DefaultVertexFormats#POSITION_COLOR} vertex; the color is ARGB as in {@link #color(int)}.
+     */
+    public void vertex(double x, double y, double z, int color) {
+        assert DefaultVertexFormats.POSITION_COLOR.equals(this.vertexFormat);
+        long pointer = this.address + this.vertexCount * 16L;
+        MemoryUtil.memPutFloat(pointer, (float) (x + this.xOffset));
+        MemoryUtil.memPutFloat(pointer + 4, (float) (y + this.yOffset));
+        MemoryUtil.memPutFloat(pointer + 8, (float) (z + this.zOffset));
+        if (!this.noColor) {
+            MemoryUtil.memPutInt(pointer + 12, packColor(color));
+        }
+        this.nextVertex(16);
+    }
+
+    /**
+     * Writes a {@link DefaultVertexFormats#POSITION_TEX} vertex.
+     */
+    public void vertex(double x, double y, double z, double u, double v) {
+        assert DefaultVertexFormats.POSITION_TEX.equals(this.vertexFormat);
+        long pointer = this.address + this.vertexCount * 20L;
+        MemoryUtil.memPutFloat(pointer, (float) (x + this.xOffset));
+        MemoryUtil.memPutFloat(pointer + 4, (float) (y + this.yOffset));
+        MemoryUtil.memPutFloat(pointer + 8, (float) (z + this.zOffset));
+        MemoryUtil.memPutFloat(pointer + 12, (float) u);
+        MemoryUtil.memPutFloat(pointer + 16, (float) v);
+        this.nextVertex(20);
+    }
+
+    /**
+     * Writes a {@link DefaultVertexFormats#POSITION_TEX_COLOR} vertex; the color is ARGB as in {@link #color(int)}.
+     */
+    public void vertex(double x, double y, double z, double u, double v, int color) {
+        assert DefaultVertexFormats.POSITION_TEX_COLOR.equals(this.vertexFormat);
+        long pointer = this.address + this.vertexCount * 24L;
+        MemoryUtil.memPutFloat(pointer, (float) (x + this.xOffset));
+        MemoryUtil.memPutFloat(pointer + 4, (float) (y + this.yOffset));
+        MemoryUtil.memPutFloat(pointer + 8, (float) (z + this.zOffset));
+        MemoryUtil.memPutFloat(pointer + 12, (float) u);
+        MemoryUtil.memPutFloat(pointer + 16, (float) v);
+        if (!this.noColor) {
+            MemoryUtil.memPutInt(pointer + 20, packColor(color));
+        }
+        this.nextVertex(24);
+    }
+
+    /**
+     * Writes a {@link DefaultVertexFormats#POSITION_TEX_COLOR_NORMAL} vertex; the color is ARGB as in {@link #color(int)}.
+     */
+    public void vertex(double x, double y, double z, double u, double v, int color, float nx, float ny, float nz) {
+        assert DefaultVertexFormats.POSITION_TEX_COLOR_NORMAL.equals(this.vertexFormat);
+        long pointer = this.address + this.vertexCount * 28L;
+        MemoryUtil.memPutFloat(pointer, (float) (x + this.xOffset));
+        MemoryUtil.memPutFloat(pointer + 4, (float) (y + this.yOffset));
+        MemoryUtil.memPutFloat(pointer + 8, (float) (z + this.zOffset));
+        MemoryUtil.memPutFloat(pointer + 12, (float) u);
+        MemoryUtil.memPutFloat(pointer + 16, (float) v);
+        if (!this.noColor) {
+            MemoryUtil.memPutInt(pointer + 20, packColor(color));
+        }
+        MemoryUtil.memPutByte(pointer + 24, (byte) ((int) (nx * 127) & 255));
+        MemoryUtil.memPutByte(pointer + 25, (byte) ((int) (ny * 127) & 255));
+        MemoryUtil.memPutByte(pointer + 26, (byte) ((int) (nz * 127) & 255));
+        this.nextVertex(28);
+    }
+
+    /*
+     * Bulk writers. They reserve storage for all of their vertices once and then write them in a single loop.
+     */
+
+    /**
+     * Makes sure the given number of vertices can be written without growing the storage.
+     */
+    public void reserve(int vertices) {
+        int size = this.vertexFormat.getByteSize();
+        long required = (long) (this.vertexCount + vertices + 1) * size;
+
+        if (required > this.byteBuffer.capacity()) {
+            this.growBuffer((int) (required - (long) this.vertexCount * size));
+        }
+    }
+
+    /**
+     * Writes an axis-aligned textured {@link DefaultVertexFormats#POSITION_TEX_COLOR} quad, clockwise from the top left corner.
+     */
+    public void quad(double x, double y, double width, double height, double uMin, double vMin, double uMax, double vMax, int color) {
+        assert DefaultVertexFormats.POSITION_TEX_COLOR.equals(this.vertexFormat);
+        this.reserve(4);
+        this.putQuad(this.address + this.vertexCount * 24L, (float) (x + this.xOffset), (float) (y + this.yOffset), (float) (x + width + this.xOffset), (float) (y + height + this.yOffset), (float) this.zOffset,
+                (float) uMin, (float) vMin, (float) uMax, (float) vMax, packColor(color));
+        this.vertexCount += 4;
+    }
+
+    /**
+     * Writes an axis-aligned {@link DefaultVertexFormats#POSITION_COLOR} quad, clockwise from the top left corner.
+     */
+    public void quad(double x, double y, double width, double height, int color) {
+        assert DefaultVertexFormats.POSITION_COLOR.equals(this.vertexFormat);
+        this.reserve(4);
+        float x1 = (float) (x + this.xOffset);
+        float y1 = (float) (y + this.yOffset);
+        float x2 = (float) (x + width + this.xOffset);
+        float y2 = (float) (y + height + this.yOffset);
+        float z = (float) this.zOffset;
+        int packed = packColor(color);
+        long pointer = this.address + this.vertexCount * 16L;
+        this.putColorVertex(pointer, x1, y1, z, packed);
+        this.putColorVertex(pointer + 16, x2, y1, z, packed);
+        this.putColorVertex(pointer + 32, x2, y2, z, packed);
+        this.putColorVertex(pointer + 48, x1, y2, z, packed);
+        this.vertexCount += 4;
+    }
+
+    /**
+     * Writes count textured {@link DefaultVertexFormats#POSITION_TEX_COLOR} quads. Each quad takes four values from xywh
+     * (x, y, width, height), four from uv (uMin, vMin, uMax, vMax) and one ARGB color, or white when colors is null.
+     */
+    public void quads(float[] xywh, float[] uv, int[] colors, int count) {
+        assert DefaultVertexFormats.POSITION_TEX_COLOR.equals(this.vertexFormat);
+        this.reserve(count * 4);
+        float dx = (float) this.xOffset;
+        float dy = (float) this.yOffset;
+        float z = (float) this.zOffset;
+        long pointer = this.address + this.vertexCount * 24L;
+
+        for (int i = 0; i < count; ++i, pointer += 96) {
+            int j = i * 4;
+            float x = xywh[j] + dx;
+            float y = xywh[j + 1] + dy;
+            int color = colors == null ? -1 : packColor(colors[i]);
+            this.putQuad(pointer, x, y, x + xywh[j + 2], y + xywh[j + 3], z, uv[j], uv[j + 1], uv[j + 2], uv[j + 3], color);
+        }
+
+        this.vertexCount += count * 4;
+    }
+
+    /**
+     * Writes one {@link DefaultVertexFormats#POSITION_COLOR} vertex per point of xy, which holds x and y pairs. The points
+     * form segments or a polyline depending on the draw mode.
+     */
+    public void lines(double[] xy, int color) {
+        this.lines(xy, xy.length / 2, color);
+    }
+
+    public void lines(double[] xy, int count, int color) {
+        this.lines(xy, 0, count, color);
+    }
+
+    /**
+     * Writes count points of xy starting at the point with index first.
+     */
+    public void lines(double[] xy, int first, int count, int color) {
+        assert DefaultVertexFormats.POSITION_COLOR.equals(this.vertexFormat);
+        this.reserve(count);
+        double dx = this.xOffset;
+        double dy = this.yOffset;
+        float z = (float) this.zOffset;
+        int packed = packColor(color);
+        long pointer = this.address + this.vertexCount * 16L;
+
+        for (int i = first; i < first + count; ++i, pointer += 16) {
+            this.putColorVertex(pointer, (float) (xy[i * 2] + dx), (float) (xy[i * 2 + 1] + dy), z, packed);
+        }
+
+        this.vertexCount += count;
+    }
+
+    private void putColorVertex(long pointer, float x, float y, float z, int color) {
+        MemoryUtil.memPutFloat(pointer, x);
+        MemoryUtil.memPutFloat(pointer + 4, y);
+        MemoryUtil.memPutFloat(pointer + 8, z);
+        if (!this.noColor) {
+            MemoryUtil.memPutInt(pointer + 12, color);
+        }
+    }
+
+    private void putTexColorVertex(long pointer, float x, float y, float z, float u, float v, int color) {
+        MemoryUtil.memPutFloat(pointer, x);
+        MemoryUtil.memPutFloat(pointer + 4, y);
+        MemoryUtil.memPutFloat(pointer + 8, z);
+        MemoryUtil.memPutFloat(pointer + 12, u);
+        MemoryUtil.memPutFloat(pointer + 16, v);
+        if (!this.noColor) {
+            MemoryUtil.memPutInt(pointer + 20, color);
+        }
+    }
+
+    private void putQuad(long pointer, float x1, float y1, float x2, float y2, float z, float uMin, float vMin, float uMax, float vMax, int color) {
+        this.putTexColorVertex(pointer, x1, y1, z, uMin, vMin, color);
+        this.putTexColorVertex(pointer + 24, x2, y1, z, uMax, vMin, color);
+        this.putTexColorVertex(pointer + 48, x2, y2, z, uMax, vMax, color);
+        this.putTexColorVertex(pointer + 72, x1, y2, z, uMin, vMax, color);
+    }
+
+    /**
+     * Converts an ARGB color into an int that, stored in native byte order, has the RGBA byte layout of COLOR_4UB, as
+     * {@link #putColorRGBA} writes it. An alpha of 0 is treated as opaque like {@link #color(int)}.
+     */
+    public static int packColor(int argb) {
+        int alpha = argb >>> 24;
+        if (alpha == 0) {
+            alpha = 255;
+        }
+        int red = argb >> 16 & 255;
+        int green = argb >> 8 & 255;
+        int blue = argb & 255;
+
+        if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
+            return alpha << 24 | blue << 16 | green << 8 | red;
+        } else {
+            return red << 24 | green << 16 | blue << 8 | alpha;
+        }
+    }
+
+    private void nextVertex(int size) {
+        ++this.vertexCount;
+        if ((this.vertexCount + 1) * size > this.byteBuffer.capacity()) {
+            this.growBuffer(size);
+        }
+    }
+
     public void endVertex() {
         ++this.vertexCount;
         this.growBuffer(this.vertexFormat.getByteSize());
@@ -468,9 +894,90 @@ public class BufferBuilder {
             this.isDrawing = false;
             this.byteBuffer.position(0);
             this.byteBuffer.limit(this.getBufferSize() * 4);
+
+            int used = this.getBufferSize() * 4;
+            if (used < this.byteBuffer.capacity() / 4) {
+                ++this.idleDraws;
+                this.recentPeak = Math.max(this.recentPeak, used);
+            } else {
+                this.idleDraws = 0;
+                this.recentPeak = 0;
+            }
         }
     }
 
+    public void expandToList(int glMode, int firstVertex) {
+        int count = this.vertexCount - firstVertex;
+        int expanded = PrimitiveModes.getListVertexCount(glMode, count);
+        int stride = this.vertexFormat.getIntegerSize();
+
+        if (this.expandScratch.length < count * stride) {
+            this.expandScratch = new int[count * stride];
+        }
+
+        int start = firstVertex * stride;
+        for (int i = 0; i < count * stride; ++i) {
+            this.expandScratch[i] = this.rawIntBuffer.get(start + i);
+        }
+
+        this.vertexCount = firstVertex;
+        this.growBuffer((expanded + 1) * this.vertexFormat.getByteSize());
+
+        for (int i = 0; i < expanded; ++i) {
+            int source = PrimitiveModes.getListVertex(glMode, count, i) * stride;
+            int target = (firstVertex + i) * stride;
+
+            for (int j = 0; j < stride; ++j) {
+                this.rawIntBuffer.put(target + j, this.expandScratch[source + j]);
+            }
+        }
+
+        this.vertexCount += expanded;
+    }
+
+    /**
+     * Appends indices drawing the vertices from firstVertex onwards, which were written for the given mode, as the list
+     * primitive of {@link PrimitiveModes#getIndexedMode(int)}. Once indices are added the whole buffer is drawn indexed.
+     */
+    public void addIndices(int glMode, int firstVertex) {
+        int count = this.vertexCount - firstVertex;
+        int indices = PrimitiveModes.getIndexCount(glMode, count);
+
+        if (this.indexBuffer == null) {
+            this.indexBuffer = MemoryUtil.memAllocInt(Math.max(1024, indices));
+        } else if (this.indexCount + indices > this.indexBuffer.capacity()) {
+            this.indexBuffer = MemoryUtil.memRealloc(this.indexBuffer, Math.max(this.indexBuffer.capacity() * 2, this.indexCount + indices));
+        }
+
+        this.indexBuffer.clear();
+        for (int i = 0; i < indices; ++i) {
+            this.indexBuffer.put(this.indexCount + i, firstVertex + PrimitiveModes.getIndex(glMode, count, i));
+        }
+
+        this.indexCount += indices;
+        this.indexed = true;
+    }
+
+    public boolean isIndexed() {
+        return this.indexed;
+    }
+
+    public int getIndexCount() {
+        return this.indexCount;
+    }
+
+    /**
+     * @return the unsigned int indices of this buffer, positioned at 0 and limited to the index count
+     */
+    public IntBuffer getIndexBuffer() {
+        this.indexBuffer.limit(this.indexCount).position(0);
+        return this.indexBuffer;
+    }
+
+    public boolean isDrawing() {
+        return this.isDrawing;
+    }
+
     public ByteBuffer getByteBuffer() {
         return this.byteBuffer;
     }
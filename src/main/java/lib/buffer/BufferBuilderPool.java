@@ -0,0 +1,29 @@
+package lib.buffer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Thread-safe pool of BufferBuilders used to build geometry off the render thread.
+ */
+public class BufferBuilderPool {
+    private final ConcurrentLinkedQueue<BufferBuilder> builders = new ConcurrentLinkedQueue<>();
+    private final int capacity;
+
+    public BufferBuilderPool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public BufferBuilder acquire() {
+        BufferBuilder builder = this.builders.poll();
+        return builder != null ? builder : new BufferBuilder(this.capacity);
+    }
+
+    public void release(BufferBuilder builder) {
+        if (builder.isDrawing()) {
+            builder.finishDrawing();
+        }
+        builder.reset();
+        builder.setTranslation(0, 0, 0);
+        this.builders.offer(builder);
+    }
+}
@@ -1,35 +1,55 @@
 package lib.buffer;
 
+import lib.vertex.QuadIndexBuffer;
 import lib.vertex.VertexFormat;
 import lib.vertex.VertexFormatElement;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
 import java.util.List;
 
+import static lib.gl.RenderSystem.gl;
+
 public class BufferUploader {
     public void draw(BufferBuilder buffer) {
         if (buffer.getVertexCount() > 0) {
-            VertexFormat format = buffer.getVertexFormat();
-            int size = format.getByteSize();
-            ByteBuffer data = buffer.getByteBuffer();
-            List<VertexFormatElement> elements = format.getElements();
-
-            for (int i = 0; i < elements.size(); ++i) {
-                VertexFormatElement element = elements.get(i);
-                data.position(format.getOffset(i));
-                element.getUsage().preDraw(format, i, size, data);
-            }
-
-            GL11.glDrawArrays(buffer.getDrawMode(), 0, buffer.getVertexCount());
-            int i = 0;
-
-            for (int e = elements.size(); i < e; ++i) {
-                VertexFormatElement element = elements.get(i);
-                element.getUsage().postDraw(format, i, size, data);
-            }
+            drawArrays(buffer, MemoryUtil.memAddress(buffer.getByteBuffer(), 0));
         }
 
         buffer.reset();
     }
-}
\ No newline at end of file
+
+    /**
+     * Draws the vertices of the buffer with attribute pointers relative to the given pointer, which is either a client memory
+     * address or an offset into the currently bound GL_ARRAY_BUFFER.
+     */
+    protected void drawArrays(BufferBuilder buffer, long pointer) {
+        VertexFormat format = buffer.getVertexFormat();
+        int size = format.getByteSize();
+        ByteBuffer data = buffer.getByteBuffer();
+        List<VertexFormatElement> elements = format.getElements();
+
+        for (int i = 0; i < elements.size(); ++i) {
+            VertexFormatElement element = elements.get(i);
+            element.getUsage().preDraw(format, i, size, pointer);
+        }
+
+        if (buffer.isIndexed()) {
+            gl().glDrawElements(buffer.getDrawMode(), buffer.getIndexCount(), GL11.GL_UNSIGNED_INT, MemoryUtil.memAddress(buffer.getIndexBuffer()));
+        } else if (buffer.getDrawMode() == GL11.GL_QUADS) {
+            QuadIndexBuffer.drawQuads(buffer.getVertexCount());
+        } else {
+            gl().glDrawArrays(buffer.getDrawMode(), 0, buffer.getVertexCount());
+        }
+        int i = 0;
+
+        for (int e = elements.size(); i < e; ++i) {
+            VertexFormatElement element = elements.get(i);
+            element.getUsage().postDraw(format, i, size, data);
+        }
+    }
+
+    public void endFrame() {
+    }
+}
@@ -0,0 +1,10 @@
+package lib.buffer;
+
+@FunctionalInterface
+public interface ParallelGeometry {
+    /**
+     * Writes the vertices for the index range [from, to) into the given buffer. Called concurrently from worker threads, each
+     * with its own buffer.
+     */
+    void build(BufferBuilder buffer, int from, int to);
+}
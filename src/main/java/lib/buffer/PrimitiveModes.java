@@ -0,0 +1,115 @@
+package lib.buffer;
+
+import org.lwjgl.opengl.GL11;
+
+public class PrimitiveModes {
+    private static final int[] QUAD_TRIANGLES = {0, 1, 2, 2, 3, 0};
+
+    public static boolean isMergeable(int glMode) {
+        return getListMode(glMode) == glMode;
+    }
+
+    public static int getListMode(int glMode) {
+        switch (glMode) {
+            case GL11.GL_LINE_STRIP:
+            case GL11.GL_LINE_LOOP:
+                return GL11.GL_LINES;
+            case GL11.GL_TRIANGLE_STRIP:
+            case GL11.GL_TRIANGLE_FAN:
+            case GL11.GL_POLYGON:
+                return GL11.GL_TRIANGLES;
+            case GL11.GL_QUAD_STRIP:
+                return GL11.GL_QUADS;
+            default:
+                return glMode;
+        }
+    }
+
+    public static int getListVertexCount(int glMode, int count) {
+        switch (glMode) {
+            case GL11.GL_LINE_STRIP:
+                return count < 2 ? 0 : (count - 1) * 2;
+            case GL11.GL_LINE_LOOP:
+                return count < 2 ? 0 : count * 2;
+            case GL11.GL_TRIANGLE_STRIP:
+            case GL11.GL_TRIANGLE_FAN:
+            case GL11.GL_POLYGON:
+                return count < 3 ? 0 : (count - 2) * 3;
+            case GL11.GL_QUAD_STRIP:
+                return count < 4 ? 0 : (count / 2 - 1) * 4;
+            default:
+                return count;
+        }
+    }
+
+    /**
+     * Maps the n-th vertex of the list primitive back onto the source vertex of the strip, loop or fan it was built from.
+     */
+    public static int getListVertex(int glMode, int count, int index) {
+        switch (glMode) {
+            case GL11.GL_LINE_STRIP:
+                return (index >> 1) + (index & 1);
+            case GL11.GL_LINE_LOOP:
+                return ((index >> 1) + (index & 1)) % count;
+            case GL11.GL_TRIANGLE_STRIP: {
+                int triangle = index / 3;
+                int corner = index % 3;
+                if ((triangle & 1) != 0 && corner < 2) {
+                    corner ^= 1;
+                }
+                return triangle + corner;
+            }
+            case GL11.GL_TRIANGLE_FAN:
+            case GL11.GL_POLYGON: {
+                int corner = index % 3;
+                return corner == 0 ? 0 : index / 3 + corner;
+            }
+            case GL11.GL_QUAD_STRIP: {
+                int quad = index >> 2;
+                int corner = index & 3;
+                return quad * 2 + (corner == 0 ? 0 : corner == 1 ? 1 : corner == 2 ? 3 : 2);
+            }
+            default:
+                return index;
+        }
+    }
+
+    /**
+     * @return the mode an indexed batch of the given mode is drawn with; every polygon mode shares GL_TRIANGLES and every
+     * line mode shares GL_LINES
+     */
+    public static int getIndexedMode(int glMode) {
+        switch (glMode) {
+            case GL11.GL_QUADS:
+            case GL11.GL_QUAD_STRIP:
+                return GL11.GL_TRIANGLES;
+            default:
+                return getListMode(glMode);
+        }
+    }
+
+    public static int getIndexCount(int glMode, int count) {
+        switch (glMode) {
+            case GL11.GL_QUADS:
+                return count / 4 * 6;
+            case GL11.GL_QUAD_STRIP:
+                return getListVertexCount(glMode, count) / 4 * 6;
+            default:
+                return getListVertexCount(glMode, count);
+        }
+    }
+
+    /**
+     * Maps the n-th index of the indexed primitive back onto the source vertex; quads are split as 0, 1, 2, 2, 3, 0.
+     */
+    public static int getIndex(int glMode, int count, int index) {
+        switch (glMode) {
+            case GL11.GL_QUADS:
+                return index / 6 * 4 + QUAD_TRIANGLES[index % 6];
+            case GL11.GL_QUAD_STRIP:
+                return getListVertex(glMode, count, index / 6 * 4 + QUAD_TRIANGLES[index % 6]);
+            default:
+                return getListVertex(glMode, count, index);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package lib.buffer;
+
+import lib.vertex.VertexBuffer;
+
+import java.util.List;
+
+/**
+ * Geometry recorded by a Tessellator into GPU-resident vertex buffers, one per run of draws that shared the same state.
+ */
+public class RetainedGeometry {
+    private final List<Run> runs;
+    private final int byteSize;
+
+    public RetainedGeometry(List<Run> runs) {
+        this.runs = runs;
+        int size = 0;
+        for (Run run : runs) {
+            size += run.getBuffer().getByteSize();
+        }
+        this.byteSize = size;
+    }
+
+    public List<Run> getRuns() {
+        return this.runs;
+    }
+
+    public int getByteSize() {
+        return this.byteSize;
+    }
+
+    public void delete() {
+        for (Run run : this.runs) {
+            run.getBuffer().deleteGlBuffers();
+        }
+        this.runs.clear();
+    }
+
+    public static class Run {
+        private final VertexBuffer buffer;
+        private final int mode;
+        private final boolean textureEnabled;
+        private final int texture;
+        private final float lineWidth;
+
+        public Run(VertexBuffer buffer, int mode, boolean textureEnabled, int texture, float lineWidth) {
+            this.buffer = buffer;
+            this.mode = mode;
+            this.textureEnabled = textureEnabled;
+            this.texture = texture;
+            this.lineWidth = lineWidth;
+        }
+
+        public VertexBuffer getBuffer() {
+            return this.buffer;
+        }
+
+        public int getMode() {
+            return this.mode;
+        }
+
+        public boolean isTextureEnabled() {
+            return this.textureEnabled;
+        }
+
+        public int getTexture() {
+            return this.texture;
+        }
+
+        public float getLineWidth() {
+            return this.lineWidth;
+        }
+    }
+}
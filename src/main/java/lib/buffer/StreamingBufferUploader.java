@@ -0,0 +1,181 @@
+package lib.buffer;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL44;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static lib.gl.RenderSystem.gl;
+
+/**
+ * Streams vertex data through a GL buffer instead of client-side arrays. When buffer storage is available the buffer is split
+ * into three sections that are mapped persistently; a fence is placed whenever writing moves on to the next section, so the
+ * CPU only waits if the GPU is still reading the section it wraps around to. Without buffer storage the buffer is orphaned
+ * with glBufferData(null) each time it fills up and written with glBufferSubData.
+ */
+public class StreamingBufferUploader extends BufferUploader {
+    private static final int SECTIONS = 3;
+    private final int sectionSize;
+    private final boolean persistent;
+    private final long[] fences = new long[SECTIONS];
+    private int buffer;
+    private ByteBuffer mapped;
+    private int section;
+    private int cursor;
+    private long bytesStreamed, lastBytesStreamed;
+    private int stalls, lastStalls;
+    private int orphans, lastOrphans;
+
+    public StreamingBufferUploader(int sectionSize) {
+        this(sectionSize, true);
+    }
+
+    public StreamingBufferUploader(int sectionSize, boolean allowPersistent) {
+        this.sectionSize = sectionSize;
+        this.persistent = allowPersistent && gl().hasBufferStorage();
+        this.buffer = gl().glGenBuffers();
+
+        long capacity = (long) sectionSize * SECTIONS;
+        gl().glBindBuffer(GL15.GL_ARRAY_BUFFER, this.buffer);
+        if (this.persistent) {
+            int flags = GL30.GL_MAP_WRITE_BIT | GL44.GL_MAP_PERSISTENT_BIT | GL44.GL_MAP_COHERENT_BIT;
+            gl().glBufferStorage(GL15.GL_ARRAY_BUFFER, capacity, flags);
+            this.mapped = gl().glMapBufferRange(GL15.GL_ARRAY_BUFFER, 0, capacity, flags);
+        } else {
+            gl().glBufferData(GL15.GL_ARRAY_BUFFER, capacity, GL15.GL_STREAM_DRAW);
+        }
+        gl().glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+    }
+
+    @Override
+    public void draw(BufferBuilder builder) {
+        if (builder.getVertexCount() > 0) {
+            ByteBuffer data = builder.getByteBuffer();
+            int size = data.limit();
+
+            if (size > this.sectionSize) {
+                super.draw(builder);
+                return;
+            }
+
+            gl().glBindBuffer(GL15.GL_ARRAY_BUFFER, this.buffer);
+            int offset = this.persistent ? this.reserveMapped(size) : this.reserveOrphaned(size);
+
+            if (this.persistent) {
+                MemoryUtil.memCopy(MemoryUtil.memAddress(data, 0), MemoryUtil.memAddress(this.mapped, offset), size);
+            } else {
+                data.position(0);
+                gl().glBufferSubData(GL15.GL_ARRAY_BUFFER, offset, data);
+            }
+
+            this.bytesStreamed += size;
+            this.drawArrays(builder, offset);
+            gl().glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        }
+
+        builder.reset();
+    }
+
+    private int reserveMapped(int size) {
+        if (this.cursor + size > (this.section + 1) * this.sectionSize) {
+            this.fences[this.section] = gl().glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            this.section = (this.section + 1) % SECTIONS;
+            this.waitForSection(this.section);
+            this.cursor = this.section * this.sectionSize;
+        }
+
+        int offset = this.cursor;
+        this.cursor += size;
+        return offset;
+    }
+
+    private int reserveOrphaned(int size) {
+        if (this.cursor + size > this.sectionSize * SECTIONS) {
+            gl().glBufferData(GL15.GL_ARRAY_BUFFER, (long) this.sectionSize * SECTIONS, GL15.GL_STREAM_DRAW);
+            ++this.orphans;
+            this.cursor = 0;
+        }
+
+        int offset = this.cursor;
+        this.cursor += size;
+        return offset;
+    }
+
+    private void waitForSection(int section) {
+        long fence = this.fences[section];
+
+        if (fence != 0) {
+            int status = gl().glClientWaitSync(fence, 0, 0);
+
+            if (status == GL32.GL_TIMEOUT_EXPIRED) {
+                ++this.stalls;
+
+                do {
+                    status = gl().glClientWaitSync(fence, GL32.GL_SYNC_FLUSH_COMMANDS_BIT, 1_000_000);
+                } while (status == GL32.GL_TIMEOUT_EXPIRED);
+            }
+
+            gl().glDeleteSync(fence);
+            this.fences[section] = 0;
+        }
+    }
+
+    @Override
+    public void endFrame() {
+        this.lastBytesStreamed = this.bytesStreamed;
+        this.lastStalls = this.stalls;
+        this.lastOrphans = this.orphans;
+        this.bytesStreamed = 0;
+        this.stalls = 0;
+        this.orphans = 0;
+    }
+
+    public boolean isPersistent() {
+        return this.persistent;
+    }
+
+    /**
+     * @return the number of vertex bytes written to the stream buffer during the last finished frame
+     */
+    public long getBytesStreamed() {
+        return this.lastBytesStreamed;
+    }
+
+    /**
+     * @return how many times the CPU had to wait for the GPU to release a section during the last finished frame
+     */
+    public int getStalls() {
+        return this.lastStalls;
+    }
+
+    /**
+     * @return how many times the buffer was orphaned during the last finished frame, when buffer storage is not available
+     */
+    public int getOrphans() {
+        return this.lastOrphans;
+    }
+
+    public void delete() {
+        for (int i = 0; i < SECTIONS; ++i) {
+            if (this.fences[i] != 0) {
+                gl().glDeleteSync(this.fences[i]);
+                this.fences[i] = 0;
+            }
+        }
+
+        if (this.buffer >= 0) {
+            if (this.persistent) {
+                gl().glBindBuffer(GL15.GL_ARRAY_BUFFER, this.buffer);
+                gl().glUnmapBuffer(GL15.GL_ARRAY_BUFFER);
+                gl().glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+                this.mapped = null;
+            }
+            gl().glDeleteBuffers(this.buffer);
+            this.buffer = -1;
+        }
+    }
+}
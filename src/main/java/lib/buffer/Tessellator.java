@@ -1,31 +1,350 @@
 package lib.buffer;
 
+import lib.vertex.VertexBuffer;
 import lib.vertex.VertexFormat;
+import org.lwjgl.opengl.GL11;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
+import static lib.gl.RenderSystem.gl;
+
 public enum Tessellator {
     DEFAULT(0x200000);
 
-    private final BufferUploader uploader = new BufferUploader();
+    private BufferUploader uploader = new BufferUploader();
     private final BufferBuilder buffer;
+    private final BufferBuilderPool pool;
+    private ForkJoinPool executor = ForkJoinPool.commonPool();
+    private boolean batching;
+    private boolean indexed = true;
+    private int batchMode;
+    private VertexFormat batchFormat;
+    private boolean batchTextureEnabled;
+    private int batchTexture;
+    private float batchLineWidth;
+    private int pendingMode;
+    private int pendingStart;
+    private boolean textureEnabled;
+    private int texture;
+    private float lineWidth = 1.0F;
+    private int drawCalls, submittedDraws;
+    private int lastDrawCalls, lastSubmittedDraws;
+    private final VertexBufferUploader recorder = new VertexBufferUploader();
+    private List<RetainedGeometry.Run> recording;
+    private boolean recordingBatching;
 
     Tessellator(int capacity) {
         buffer = new BufferBuilder(capacity);
+        pool = new BufferBuilderPool(capacity / 16);
     }
 
     public void draw(int mode, VertexFormat format, Consumer<BufferBuilder> builder) {
-        buffer.begin(mode, format);
-        builder.accept(buffer);
-        buffer.finishDrawing();
-        uploader.draw(buffer);
+        builder.accept(begin(mode, format));
+        draw();
+    }
+
+    /**
+     * Builds the geometry for the index range [0, count) in parallel. The range is split into chunks which are built by the
+     * executor into their own pooled BufferBuilders and then merged into this tessellator in chunk order, so the result is
+     * the same as building the whole range on the render thread. Strips, loops and fans are closed at chunk boundaries, so
+     * each chunk must describe complete primitives for those modes.
+     * <p>
+     * Interrupting the calling thread does not drop the draw: the chunks are still awaited and drawn, and the interrupt
+     * status is restored afterwards.
+     */
+    public void drawParallel(int mode, VertexFormat format, int count, ParallelGeometry geometry) {
+        if (count <= 0) {
+            return;
+        }
+
+        int chunks = Math.min(count, executor.getParallelism() * 4);
+        int chunkSize = (count + chunks - 1) / chunks;
+        List<Callable<BufferBuilder>> tasks = new ArrayList<>(chunks);
+
+        for (int from = 0; from < count; from += chunkSize) {
+            int start = from;
+            int end = Math.min(count, from + chunkSize);
+            tasks.add(() -> {
+                BufferBuilder part = pool.acquire();
+                try {
+                    part.begin(mode, format);
+                    geometry.build(part, start, end);
+                    if (!PrimitiveModes.isMergeable(mode)) {
+                        part.expandToList(mode, 0);
+                    }
+                    part.finishDrawing();
+                } catch (RuntimeException | Error exc) {
+                    pool.release(part);
+                    throw exc;
+                }
+                return part;
+            });
+        }
+
+        List<Future<BufferBuilder>> futures = new ArrayList<>(tasks.size());
+        for (Callable<BufferBuilder> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+
+        List<BufferBuilder> parts = new ArrayList<>(futures.size());
+        boolean interrupted = false;
+        Throwable failure = null;
+        try {
+            for (Future<BufferBuilder> future : futures) {
+                while (true) {
+                    try {
+                        parts.add(future.get());
+                        break;
+                    } catch (InterruptedException exc) {
+                        interrupted = true;
+                    } catch (ExecutionException exc) {
+                        failure = failure == null ? exc.getCause() : failure;
+                        break;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw new RuntimeException("Parallel geometry building failed", failure);
+            }
+
+            BufferBuilder target = begin(PrimitiveModes.getListMode(mode), format);
+            for (BufferBuilder part : parts) {
+                target.putBulkData(part.getByteBuffer());
+            }
+            draw();
+        } finally {
+            for (BufferBuilder part : parts) {
+                pool.release(part);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void setExecutor(ForkJoinPool executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a draw of the given mode. In batching mode the vertices are appended to the pending batch when it shares the
+     * mode, format and GL state of this draw, otherwise the pending batch is flushed first.
+     */
+    public BufferBuilder begin(int mode, VertexFormat format) {
+        if (batching) {
+            int listMode = indexed ? PrimitiveModes.getIndexedMode(mode) : PrimitiveModes.getListMode(mode);
+
+            if (buffer.isDrawing() && !canMerge(listMode, format)) {
+                flush();
+            }
+
+            if (!buffer.isDrawing()) {
+                buffer.begin(listMode, format);
+                batchMode = listMode;
+                batchFormat = format;
+                batchTextureEnabled = textureEnabled;
+                batchTexture = texture;
+                batchLineWidth = lineWidth;
+            }
+
+            pendingStart = buffer.getVertexCount();
+        } else {
+            buffer.begin(mode, format);
+        }
+
+        pendingMode = mode;
+        return buffer;
+    }
+
+    private boolean canMerge(int listMode, VertexFormat format) {
+        if (batchMode != listMode || !batchFormat.equals(format) || batchTextureEnabled != textureEnabled) {
+            return false;
+        } else if (textureEnabled && batchTexture != texture) {
+            return false;
+        } else {
+            return listMode != GL11.GL_LINES || batchLineWidth == lineWidth;
+        }
     }
 
     public void draw() {
-        buffer.finishDrawing();
+        ++submittedDraws;
+
+        if (batching) {
+            if (indexed) {
+                buffer.addIndices(pendingMode, pendingStart);
+            } else if (!PrimitiveModes.isMergeable(pendingMode)) {
+                buffer.expandToList(pendingMode, pendingStart);
+            }
+        } else {
+            buffer.finishDrawing();
+            batchTextureEnabled = textureEnabled;
+            batchTexture = texture;
+            batchLineWidth = lineWidth;
+            upload();
+        }
+    }
+
+    /**
+     * Draws the pending batch, if any. Must be called before issuing GL calls that change state outside of the tessellator.
+     */
+    public void flush() {
+        if (buffer.isDrawing()) {
+            buffer.finishDrawing();
+            upload();
+        }
+    }
+
+    public void endFrame() {
+        flush();
+        uploader.endFrame();
+        lastDrawCalls = drawCalls;
+        lastSubmittedDraws = submittedDraws;
+        drawCalls = 0;
+        submittedDraws = 0;
+    }
+
+    private void upload() {
+        if (buffer.getVertexCount() > 0) {
+            if (recording != null) {
+                VertexBuffer vertexBuffer = new VertexBuffer(buffer.getVertexFormat());
+                recorder.setVertexBuffer(vertexBuffer);
+                recorder.draw(buffer);
+                recording.add(new RetainedGeometry.Run(vertexBuffer, buffer.getDrawMode(), batchTextureEnabled, batchTexture, batchLineWidth));
+                return;
+            }
+            applyState(batchTextureEnabled, batchTexture, batchLineWidth);
+            ++drawCalls;
+        }
         uploader.draw(buffer);
     }
 
+    private void applyState(boolean textureEnabled, int texture, float lineWidth) {
+        if (textureEnabled) {
+            gl().glEnable(GL11.GL_TEXTURE_2D);
+            gl().glBindTexture(GL11.GL_TEXTURE_2D, texture);
+        } else {
+            gl().glDisable(GL11.GL_TEXTURE_2D);
+        }
+        gl().glLineWidth(lineWidth);
+    }
+
+    /**
+     * Starts capturing all following draws into vertex buffers instead of drawing them. Draws are batched while recording,
+     * so each run of draws sharing the same state becomes a single buffer.
+     */
+    public void startRecording() {
+        if (recording != null) {
+            throw new IllegalStateException("Already recording!");
+        }
+        flush();
+        recordingBatching = batching;
+        batching = true;
+        recording = new ArrayList<>();
+    }
+
+    public RetainedGeometry stopRecording() {
+        if (recording == null) {
+            throw new IllegalStateException("Not recording!");
+        }
+        flush();
+        RetainedGeometry geometry = new RetainedGeometry(recording);
+        recording = null;
+        batching = recordingBatching;
+        return geometry;
+    }
+
+    public boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Replays recorded geometry with one buffer bind and one draw call per run.
+     */
+    public void draw(RetainedGeometry geometry) {
+        flush();
+        for (RetainedGeometry.Run run : geometry.getRuns()) {
+            applyState(run.isTextureEnabled(), run.getTexture(), run.getLineWidth());
+            run.getBuffer().draw(run.getMode());
+            ++drawCalls;
+        }
+    }
+
+    /*
+     * State setters only record the requested state; it is compared against the pending batch in begin() and applied to GL
+     * right before the batch is drawn, so changing it between draws never affects already submitted geometry.
+     */
+
+    public void setTextureEnabled(boolean enabled) {
+        textureEnabled = enabled;
+    }
+
+    public void bindTexture(int texture) {
+        this.texture = texture;
+    }
+
+    public void setLineWidth(float width) {
+        lineWidth = width;
+    }
+
+    public void setUploader(BufferUploader uploader) {
+        flush();
+        this.uploader = uploader;
+    }
+
+    public BufferUploader getUploader() {
+        return uploader;
+    }
+
+    public void setBatching(boolean batching) {
+        if (recording != null) {
+            recordingBatching = batching;
+            return;
+        }
+        if (!batching) {
+            flush();
+        }
+        this.batching = batching;
+    }
+
+    public boolean isBatching() {
+        return batching;
+    }
+
+    /**
+     * Selects whether batches are indexed. Indexed batches draw quads, strips and fans together as GL_TRIANGLES, and line
+     * strips and loops as GL_LINES, through generated indices instead of duplicated vertices.
+     */
+    public void setIndexed(boolean indexed) {
+        if (this.indexed != indexed) {
+            flush();
+            this.indexed = indexed;
+        }
+    }
+
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * @return the number of glDrawArrays calls issued during the last finished frame
+     */
+    public int getDrawCalls() {
+        return lastDrawCalls;
+    }
+
+    /**
+     * @return the number of draws submitted to the tessellator during the last finished frame, before batching
+     */
+    public int getSubmittedDraws() {
+        return lastSubmittedDraws;
+    }
+
     public BufferBuilder getBuffer() {
         return this.buffer;
     }
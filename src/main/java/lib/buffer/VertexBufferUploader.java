@@ -7,8 +7,11 @@ public class VertexBufferUploader extends BufferUploader {
 
     @Override
     public void draw(BufferBuilder buffer) {
-        buffer.reset();
         this.vertexBuffer.bufferData(buffer.getByteBuffer());
+        if (buffer.isIndexed()) {
+            this.vertexBuffer.bufferIndices(buffer.getIndexBuffer());
+        }
+        buffer.reset();
     }
 
     public void setVertexBuffer(VertexBuffer vertexBuffer) {
@@ -0,0 +1,168 @@
+package lib.gl;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * The OpenGL entry points used by the rendering library. Everything in lib issues its GL calls through the backend returned by
+ * {@link RenderSystem#gl()}, so the calls can be redirected, for example to a {@link RecordingBackend} when there is no GPU.
+ * Methods mirror the GL functions of the same name; enum and bit arguments use the LWJGL GL constants.
+ */
+public interface GLBackend {
+    boolean hasBufferStorage();
+
+    /**
+     * @return true if instanced arrays and instanced draws are available, see {@link #glVertexAttribDivisor}
+     */
+    boolean hasInstancing();
+
+    /**
+     * Called once at the end of every frame, after all of its GL calls.
+     */
+    default void endFrame() {
+    }
+
+    /* Fixed function state */
+
+    void glEnable(int cap);
+
+    void glDisable(int cap);
+
+    void glBlendFunc(int sfactor, int dfactor);
+
+    void glLineWidth(float width);
+
+    void glTexEnvi(int target, int pname, int param);
+
+    void glPixelStorei(int pname, int param);
+
+    void glViewport(int x, int y, int width, int height);
+
+    void glClearColor(float red, float green, float blue, float alpha);
+
+    void glClear(int mask);
+
+    void glMatrixMode(int mode);
+
+    void glPushMatrix();
+
+    void glPopMatrix();
+
+    void glOrtho(double left, double right, double bottom, double top, double zNear, double zFar);
+
+    void glTranslatef(float x, float y, float z);
+
+    /* Textures */
+
+    int glGenTextures();
+
+    void glDeleteTextures(int texture);
+
+    void glBindTexture(int target, int texture);
+
+    void glActiveTexture(int texture);
+
+    void glTexParameteri(int target, int pname, int param);
+
+    void glTexImage2D(int target, int level, int internalFormat, int width, int height, int border, int format, int type, ByteBuffer pixels);
+
+    void glTexImage2D(int target, int level, int internalFormat, int width, int height, int border, int format, int type, IntBuffer pixels);
+
+    void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, ByteBuffer pixels);
+
+    void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, IntBuffer pixels);
+
+    void glGetTexImage(int target, int level, int format, int type, IntBuffer pixels);
+
+    /* Vertex arrays */
+
+    void glEnableClientState(int array);
+
+    void glDisableClientState(int array);
+
+    void glVertexPointer(int size, int type, int stride, long pointer);
+
+    void glColorPointer(int size, int type, int stride, long pointer);
+
+    void glTexCoordPointer(int size, int type, int stride, long pointer);
+
+    void glNormalPointer(int type, int stride, long pointer);
+
+    void glEnableVertexAttribArray(int index);
+
+    void glDisableVertexAttribArray(int index);
+
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long pointer);
+
+    void glDrawArrays(int mode, int first, int count);
+
+    void glDrawElements(int mode, int count, int type, long indices);
+
+    void glVertexAttribDivisor(int index, int divisor);
+
+    void glDrawArraysInstanced(int mode, int first, int count, int primcount);
+
+    /* Buffer objects */
+
+    int glGenBuffers();
+
+    void glDeleteBuffers(int buffer);
+
+    void glBindBuffer(int target, int buffer);
+
+    void glBufferData(int target, long size, int usage);
+
+    void glBufferData(int target, ByteBuffer data, int usage);
+
+    void glBufferData(int target, IntBuffer data, int usage);
+
+    void glBufferSubData(int target, long offset, ByteBuffer data);
+
+    void glBufferStorage(int target, long size, int flags);
+
+    ByteBuffer glMapBufferRange(int target, long offset, long length, int access);
+
+    boolean glUnmapBuffer(int target);
+
+    /* Sync objects */
+
+    long glFenceSync(int condition, int flags);
+
+    int glClientWaitSync(long sync, int flags, long timeout);
+
+    void glDeleteSync(long sync);
+
+    /* Shaders */
+
+    int glCreateShader(int type);
+
+    void glShaderSource(int shader, CharSequence source);
+
+    void glCompileShader(int shader);
+
+    int glGetShaderi(int shader, int pname);
+
+    String glGetShaderInfoLog(int shader);
+
+    void glDeleteShader(int shader);
+
+    int glCreateProgram();
+
+    void glAttachShader(int program, int shader);
+
+    void glBindAttribLocation(int program, int index, CharSequence name);
+
+    void glLinkProgram(int program);
+
+    int glGetProgrami(int program, int pname);
+
+    String glGetProgramInfoLog(int program);
+
+    void glDeleteProgram(int program);
+
+    void glUseProgram(int program);
+
+    int glGetUniformLocation(int program, CharSequence name);
+
+    void glUniform1i(int location, int value);
+}
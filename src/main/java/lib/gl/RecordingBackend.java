@@ -0,0 +1,779 @@
+package lib.gl;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.PrintStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A backend that does not touch the GPU. It counts the calls it receives, the draw calls, vertices and bytes they submit and
+ * the number of state changes, and can print every call to a stream. Generated names are unique but otherwise meaningless,
+ * fences are always signaled and mapped buffers are plain off-heap memory, so full frames can be run headless at CPU speed.
+ */
+public class RecordingBackend implements GLBackend {
+    private final int[] calls = new int[Command.values().length];
+    private final List<ByteBuffer> mappedBuffers = new ArrayList<>();
+    private PrintStream out;
+    private int lastName;
+    private long totalCalls;
+    private long drawCalls;
+    private long vertices;
+    private long bytesUploaded;
+    private long stateChanges;
+
+    public RecordingBackend() {
+    }
+
+    /**
+     * @param out stream every call is printed to, one per line, or null to only count them
+     */
+    public RecordingBackend(PrintStream out) {
+        this.out = out;
+    }
+
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    private void count(Command command) {
+        ++calls[command.ordinal()];
+        ++totalCalls;
+    }
+
+    private void log(String name, Object... args) {
+        StringBuilder line = new StringBuilder(name);
+        for (Object arg : args) {
+            if (arg instanceof Buffer) {
+                line.append(" [").append(((Buffer) arg).remaining()).append(']');
+            } else {
+                line.append(' ').append(arg);
+            }
+        }
+        out.println(line);
+    }
+
+    public int getCalls(Command command) {
+        return calls[command.ordinal()];
+    }
+
+    public long getTotalCalls() {
+        return totalCalls;
+    }
+
+    public long getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * @return the vertices, or indices for indexed draws, submitted by all draw calls
+     */
+    public long getVertices() {
+        return vertices;
+    }
+
+    /**
+     * @return the bytes passed to texture and buffer uploads; data written to mapped buffers is not included
+     */
+    public long getBytesUploaded() {
+        return bytesUploaded;
+    }
+
+    public long getStateChanges() {
+        return stateChanges;
+    }
+
+    public void reset() {
+        for (int i = 0; i < calls.length; ++i) {
+            calls[i] = 0;
+        }
+        totalCalls = 0;
+        drawCalls = 0;
+        vertices = 0;
+        bytesUploaded = 0;
+        stateChanges = 0;
+    }
+
+    /**
+     * Frees the memory handed out for mapped buffers.
+     */
+    public void free() {
+        for (ByteBuffer buffer : mappedBuffers) {
+            MemoryUtil.memFree(buffer);
+        }
+        mappedBuffers.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("calls: " + totalCalls + ", draw calls: " + drawCalls + ", vertices: " + vertices
+                + ", bytes uploaded: " + bytesUploaded + ", state changes: " + stateChanges);
+        for (Command command : Command.values()) {
+            if (calls[command.ordinal()] > 0) {
+                s.append("\n  ").append(command.getFunctionName()).append(": ").append(calls[command.ordinal()]);
+            }
+        }
+        return s.toString();
+    }
+
+    @Override
+    public boolean hasBufferStorage() {
+        return true;
+    }
+
+    @Override
+    public boolean hasInstancing() {
+        return true;
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        count(Command.ENABLE);
+        ++stateChanges;
+        if (out != null) {
+            log("glEnable", cap);
+        }
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        count(Command.DISABLE);
+        ++stateChanges;
+        if (out != null) {
+            log("glDisable", cap);
+        }
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        count(Command.BLEND_FUNC);
+        ++stateChanges;
+        if (out != null) {
+            log("glBlendFunc", sfactor, dfactor);
+        }
+    }
+
+    @Override
+    public void glLineWidth(float width) {
+        count(Command.LINE_WIDTH);
+        ++stateChanges;
+        if (out != null) {
+            log("glLineWidth", width);
+        }
+    }
+
+    @Override
+    public void glTexEnvi(int target, int pname, int param) {
+        count(Command.TEX_ENVI);
+        ++stateChanges;
+        if (out != null) {
+            log("glTexEnvi", target, pname, param);
+        }
+    }
+
+    @Override
+    public void glPixelStorei(int pname, int param) {
+        count(Command.PIXEL_STOREI);
+        ++stateChanges;
+        if (out != null) {
+            log("glPixelStorei", pname, param);
+        }
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        count(Command.VIEWPORT);
+        if (out != null) {
+            log("glViewport", x, y, width, height);
+        }
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        count(Command.CLEAR_COLOR);
+        if (out != null) {
+            log("glClearColor", red, green, blue, alpha);
+        }
+    }
+
+    @Override
+    public void glClear(int mask) {
+        count(Command.CLEAR);
+        if (out != null) {
+            log("glClear", mask);
+        }
+    }
+
+    @Override
+    public void glMatrixMode(int mode) {
+        count(Command.MATRIX_MODE);
+        ++stateChanges;
+        if (out != null) {
+            log("glMatrixMode", mode);
+        }
+    }
+
+    @Override
+    public void glPushMatrix() {
+        count(Command.PUSH_MATRIX);
+        if (out != null) {
+            log("glPushMatrix");
+        }
+    }
+
+    @Override
+    public void glPopMatrix() {
+        count(Command.POP_MATRIX);
+        if (out != null) {
+            log("glPopMatrix");
+        }
+    }
+
+    @Override
+    public void glOrtho(double left, double right, double bottom, double top, double zNear, double zFar) {
+        count(Command.ORTHO);
+        if (out != null) {
+            log("glOrtho", left, right, bottom, top, zNear, zFar);
+        }
+    }
+
+    @Override
+    public void glTranslatef(float x, float y, float z) {
+        count(Command.TRANSLATEF);
+        if (out != null) {
+            log("glTranslatef", x, y, z);
+        }
+    }
+
+    @Override
+    public int glGenTextures() {
+        count(Command.GEN_TEXTURES);
+        if (out != null) {
+            log("glGenTextures");
+        }
+        return ++lastName;
+    }
+
+    @Override
+    public void glDeleteTextures(int texture) {
+        count(Command.DELETE_TEXTURES);
+        if (out != null) {
+            log("glDeleteTextures", texture);
+        }
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        count(Command.BIND_TEXTURE);
+        ++stateChanges;
+        if (out != null) {
+            log("glBindTexture", target, texture);
+        }
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        count(Command.ACTIVE_TEXTURE);
+        ++stateChanges;
+        if (out != null) {
+            log("glActiveTexture", texture);
+        }
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        count(Command.TEX_PARAMETERI);
+        if (out != null) {
+            log("glTexParameteri", target, pname, param);
+        }
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalFormat, int width, int height, int border, int format, int type, ByteBuffer pixels) {
+        count(Command.TEX_IMAGE_2D);
+        bytesUploaded += pixels == null ? 0 : pixels.remaining();
+        if (out != null) {
+            log("glTexImage2D", target, level, internalFormat, width, height, border, format, type, pixels);
+        }
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalFormat, int width, int height, int border, int format, int type, IntBuffer pixels) {
+        count(Command.TEX_IMAGE_2D);
+        bytesUploaded += pixels == null ? 0 : pixels.remaining() * 4L;
+        if (out != null) {
+            log("glTexImage2D", target, level, internalFormat, width, height, border, format, type, pixels);
+        }
+    }
+
+    @Override
+    public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, ByteBuffer pixels) {
+        count(Command.TEX_SUB_IMAGE_2D);
+        bytesUploaded += pixels == null ? 0 : pixels.remaining();
+        if (out != null) {
+            log("glTexSubImage2D", target, level, xoffset, yoffset, width, height, format, type, pixels);
+        }
+    }
+
+    @Override
+    public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, IntBuffer pixels) {
+        count(Command.TEX_SUB_IMAGE_2D);
+        bytesUploaded += pixels == null ? 0 : pixels.remaining() * 4L;
+        if (out != null) {
+            log("glTexSubImage2D", target, level, xoffset, yoffset, width, height, format, type, pixels);
+        }
+    }
+
+    @Override
+    public void glGetTexImage(int target, int level, int format, int type, IntBuffer pixels) {
+        count(Command.GET_TEX_IMAGE);
+        if (out != null) {
+            log("glGetTexImage", target, level, format, type, pixels);
+        }
+    }
+
+    @Override
+    public void glEnableClientState(int array) {
+        count(Command.ENABLE_CLIENT_STATE);
+        ++stateChanges;
+        if (out != null) {
+            log("glEnableClientState", array);
+        }
+    }
+
+    @Override
+    public void glDisableClientState(int array) {
+        count(Command.DISABLE_CLIENT_STATE);
+        ++stateChanges;
+        if (out != null) {
+            log("glDisableClientState", array);
+        }
+    }
+
+    @Override
+    public void glVertexPointer(int size, int type, int stride, long pointer) {
+        count(Command.VERTEX_POINTER);
+        if (out != null) {
+            log("glVertexPointer", size, type, stride, pointer);
+        }
+    }
+
+    @Override
+    public void glColorPointer(int size, int type, int stride, long pointer) {
+        count(Command.COLOR_POINTER);
+        if (out != null) {
+            log("glColorPointer", size, type, stride, pointer);
+        }
+    }
+
+    @Override
+    public void glTexCoordPointer(int size, int type, int stride, long pointer) {
+        count(Command.TEX_COORD_POINTER);
+        if (out != null) {
+            log("glTexCoordPointer", size, type, stride, pointer);
+        }
+    }
+
+    @Override
+    public void glNormalPointer(int type, int stride, long pointer) {
+        count(Command.NORMAL_POINTER);
+        if (out != null) {
+            log("glNormalPointer", type, stride, pointer);
+        }
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        count(Command.ENABLE_VERTEX_ATTRIB_ARRAY);
+        ++stateChanges;
+        if (out != null) {
+            log("glEnableVertexAttribArray", index);
+        }
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        count(Command.DISABLE_VERTEX_ATTRIB_ARRAY);
+        ++stateChanges;
+        if (out != null) {
+            log("glDisableVertexAttribArray", index);
+        }
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long pointer) {
+        count(Command.VERTEX_ATTRIB_POINTER);
+        if (out != null) {
+            log("glVertexAttribPointer", index, size, type, normalized, stride, pointer);
+        }
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        count(Command.DRAW_ARRAYS);
+        ++drawCalls;
+        vertices += count;
+        if (out != null) {
+            log("glDrawArrays", mode, first, count);
+        }
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, long indices) {
+        count(Command.DRAW_ELEMENTS);
+        ++drawCalls;
+        vertices += count;
+        if (out != null) {
+            log("glDrawElements", mode, count, type, indices);
+        }
+    }
+
+    @Override
+    public void glVertexAttribDivisor(int index, int divisor) {
+        count(Command.VERTEX_ATTRIB_DIVISOR);
+        if (out != null) {
+            log("glVertexAttribDivisor", index, divisor);
+        }
+    }
+
+    @Override
+    public void glDrawArraysInstanced(int mode, int first, int count, int primcount) {
+        count(Command.DRAW_ARRAYS_INSTANCED);
+        ++drawCalls;
+        vertices += (long) count * primcount;
+        if (out != null) {
+            log("glDrawArraysInstanced", mode, first, count, primcount);
+        }
+    }
+
+    @Override
+    public int glGenBuffers() {
+        count(Command.GEN_BUFFERS);
+        if (out != null) {
+            log("glGenBuffers");
+        }
+        return ++lastName;
+    }
+
+    @Override
+    public void glDeleteBuffers(int buffer) {
+        count(Command.DELETE_BUFFERS);
+        if (out != null) {
+            log("glDeleteBuffers", buffer);
+        }
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        count(Command.BIND_BUFFER);
+        ++stateChanges;
+        if (out != null) {
+            log("glBindBuffer", target, buffer);
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, long size, int usage) {
+        count(Command.BUFFER_DATA);
+        if (out != null) {
+            log("glBufferData", target, size, usage);
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, ByteBuffer data, int usage) {
+        count(Command.BUFFER_DATA);
+        bytesUploaded += data == null ? 0 : data.remaining();
+        if (out != null) {
+            log("glBufferData", target, data, usage);
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, IntBuffer data, int usage) {
+        count(Command.BUFFER_DATA);
+        bytesUploaded += data == null ? 0 : data.remaining() * 4L;
+        if (out != null) {
+            log("glBufferData", target, data, usage);
+        }
+    }
+
+    @Override
+    public void glBufferSubData(int target, long offset, ByteBuffer data) {
+        count(Command.BUFFER_SUB_DATA);
+        bytesUploaded += data == null ? 0 : data.remaining();
+        if (out != null) {
+            log("glBufferSubData", target, offset, data);
+        }
+    }
+
+    @Override
+    public void glBufferStorage(int target, long size, int flags) {
+        count(Command.BUFFER_STORAGE);
+        if (out != null) {
+            log("glBufferStorage", target, size, flags);
+        }
+    }
+
+    @Override
+    public ByteBuffer glMapBufferRange(int target, long offset, long length, int access) {
+        count(Command.MAP_BUFFER_RANGE);
+        if (out != null) {
+            log("glMapBufferRange", target, offset, length, access);
+        }
+        ByteBuffer mapped = MemoryUtil.memAlloc((int) length);
+        mappedBuffers.add(mapped);
+        return mapped;
+    }
+
+    @Override
+    public boolean glUnmapBuffer(int target) {
+        count(Command.UNMAP_BUFFER);
+        if (out != null) {
+            log("glUnmapBuffer", target);
+        }
+        return true;
+    }
+
+    @Override
+    public long glFenceSync(int condition, int flags) {
+        count(Command.FENCE_SYNC);
+        if (out != null) {
+            log("glFenceSync", condition, flags);
+        }
+        return ++lastName;
+    }
+
+    @Override
+    public int glClientWaitSync(long sync, int flags, long timeout) {
+        count(Command.CLIENT_WAIT_SYNC);
+        if (out != null) {
+            log("glClientWaitSync", sync, flags, timeout);
+        }
+        return GL32.GL_ALREADY_SIGNALED;
+    }
+
+    @Override
+    public void glDeleteSync(long sync) {
+        count(Command.DELETE_SYNC);
+        if (out != null) {
+            log("glDeleteSync", sync);
+        }
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        count(Command.CREATE_SHADER);
+        if (out != null) {
+            log("glCreateShader", type);
+        }
+        return ++lastName;
+    }
+
+    @Override
+    public void glShaderSource(int shader, CharSequence source) {
+        count(Command.SHADER_SOURCE);
+        if (out != null) {
+            log("glShaderSource", shader, source);
+        }
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        count(Command.COMPILE_SHADER);
+        if (out != null) {
+            log("glCompileShader", shader);
+        }
+    }
+
+    @Override
+    public int glGetShaderi(int shader, int pname) {
+        count(Command.GET_SHADERI);
+        if (out != null) {
+            log("glGetShaderi", shader, pname);
+        }
+        return GL11.GL_TRUE;
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        count(Command.GET_SHADER_INFO_LOG);
+        if (out != null) {
+            log("glGetShaderInfoLog", shader);
+        }
+        return "";
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        count(Command.DELETE_SHADER);
+        if (out != null) {
+            log("glDeleteShader", shader);
+        }
+    }
+
+    @Override
+    public int glCreateProgram() {
+        count(Command.CREATE_PROGRAM);
+        if (out != null) {
+            log("glCreateProgram");
+        }
+        return ++lastName;
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        count(Command.ATTACH_SHADER);
+        if (out != null) {
+            log("glAttachShader", program, shader);
+        }
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, CharSequence name) {
+        count(Command.BIND_ATTRIB_LOCATION);
+        if (out != null) {
+            log("glBindAttribLocation", program, index, name);
+        }
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        count(Command.LINK_PROGRAM);
+        if (out != null) {
+            log("glLinkProgram", program);
+        }
+    }
+
+    @Override
+    public int glGetProgrami(int program, int pname) {
+        count(Command.GET_PROGRAMI);
+        if (out != null) {
+            log("glGetProgrami", program, pname);
+        }
+        return GL11.GL_TRUE;
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        count(Command.GET_PROGRAM_INFO_LOG);
+        if (out != null) {
+            log("glGetProgramInfoLog", program);
+        }
+        return "";
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        count(Command.DELETE_PROGRAM);
+        if (out != null) {
+            log("glDeleteProgram", program);
+        }
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        count(Command.USE_PROGRAM);
+        ++stateChanges;
+        if (out != null) {
+            log("glUseProgram", program);
+        }
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, CharSequence name) {
+        count(Command.GET_UNIFORM_LOCATION);
+        if (out != null) {
+            log("glGetUniformLocation", program, name);
+        }
+        return 0;
+    }
+
+    @Override
+    public void glUniform1i(int location, int value) {
+        count(Command.UNIFORM1I);
+        if (out != null) {
+            log("glUniform1i", location, value);
+        }
+    }
+
+    public enum Command {
+        ENABLE("glEnable"),
+        DISABLE("glDisable"),
+        BLEND_FUNC("glBlendFunc"),
+        LINE_WIDTH("glLineWidth"),
+        TEX_ENVI("glTexEnvi"),
+        PIXEL_STOREI("glPixelStorei"),
+        VIEWPORT("glViewport"),
+        CLEAR_COLOR("glClearColor"),
+        CLEAR("glClear"),
+        MATRIX_MODE("glMatrixMode"),
+        PUSH_MATRIX("glPushMatrix"),
+        POP_MATRIX("glPopMatrix"),
+        ORTHO("glOrtho"),
+        TRANSLATEF("glTranslatef"),
+        GEN_TEXTURES("glGenTextures"),
+        DELETE_TEXTURES("glDeleteTextures"),
+        BIND_TEXTURE("glBindTexture"),
+        ACTIVE_TEXTURE("glActiveTexture"),
+        TEX_PARAMETERI("glTexParameteri"),
+        TEX_IMAGE_2D("glTexImage2D"),
+        TEX_SUB_IMAGE_2D("glTexSubImage2D"),
+        GET_TEX_IMAGE("glGetTexImage"),
+        ENABLE_CLIENT_STATE("glEnableClientState"),
+        DISABLE_CLIENT_STATE("glDisableClientState"),
+        VERTEX_POINTER("glVertexPointer"),
+        COLOR_POINTER("glColorPointer"),
+        TEX_COORD_POINTER("glTexCoordPointer"),
+        NORMAL_POINTER("glNormalPointer"),
+        ENABLE_VERTEX_ATTRIB_ARRAY("glEnableVertexAttribArray"),
+        DISABLE_VERTEX_ATTRIB_ARRAY("glDisableVertexAttribArray"),
+        VERTEX_ATTRIB_POINTER("glVertexAttribPointer"),
+        DRAW_ARRAYS("glDrawArrays"),
+        DRAW_ELEMENTS("glDrawElements"),
+        VERTEX_ATTRIB_DIVISOR("glVertexAttribDivisor"),
+        DRAW_ARRAYS_INSTANCED("glDrawArraysInstanced"),
+        GEN_BUFFERS("glGenBuffers"),
+        DELETE_BUFFERS("glDeleteBuffers"),
+        BIND_BUFFER("glBindBuffer"),
+        BUFFER_DATA("glBufferData"),
+        BUFFER_SUB_DATA("glBufferSubData"),
+        BUFFER_STORAGE("glBufferStorage"),
+        MAP_BUFFER_RANGE("glMapBufferRange"),
+        UNMAP_BUFFER("glUnmapBuffer"),
+        FENCE_SYNC("glFenceSync"),
+        CLIENT_WAIT_SYNC("glClientWaitSync"),
+        DELETE_SYNC("glDeleteSync"),
+        CREATE_SHADER("glCreateShader"),
+        SHADER_SOURCE("glShaderSource"),
+        COMPILE_SHADER("glCompileShader"),
+        GET_SHADERI("glGetShaderi"),
+        GET_SHADER_INFO_LOG("glGetShaderInfoLog"),
+        DELETE_SHADER("glDeleteShader"),
+        CREATE_PROGRAM("glCreateProgram"),
+        ATTACH_SHADER("glAttachShader"),
+        BIND_ATTRIB_LOCATION("glBindAttribLocation"),
+        LINK_PROGRAM("glLinkProgram"),
+        GET_PROGRAMI("glGetProgrami"),
+        GET_PROGRAM_INFO_LOG("glGetProgramInfoLog"),
+        DELETE_PROGRAM("glDeleteProgram"),
+        USE_PROGRAM("glUseProgram"),
+        GET_UNIFORM_LOCATION("glGetUniformLocation"),
+        UNIFORM1I("glUniform1i");
+
+        private final String functionName;
+
+        Command(String functionName) {
+            this.functionName = functionName;
+        }
+
+        public String getFunctionName() {
+            return this.functionName;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package lib.gl;
+
+/**
+ * Holds the GL backend used by the rendering library. It defaults to the LWJGL backend behind a {@link StateCachingBackend}
+ * and must only be replaced while nothing is being drawn, since GL objects created through one backend are unknown to another.
+ */
+public class RenderSystem {
+    private static GLBackend backend = new StateCachingBackend(new LwjglBackend());
+
+    public static GLBackend gl() {
+        return backend;
+    }
+
+    public static void setBackend(GLBackend backend) {
+        RenderSystem.backend = backend;
+    }
+}
@@ -0,0 +1,546 @@
+package lib.gl;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Shadows the GL state the library changes most often and drops calls that would not change it: enable bits, client arrays
+ * and vertex attribute arrays, the 2D texture bound to each unit, the active texture unit, the blend function, the line
+ * width, the texture environment mode, the current program and the array and element buffer bindings. Everything else is
+ * passed through.
+ * <p>
+ * The shadow starts out unknown, so the first call for each piece of state always goes through. Code that changes GL state
+ * without going through this backend must call {@link #invalidate()} afterwards.
+ */
+public class StateCachingBackend implements GLBackend {
+    private static final int UNKNOWN = -1;
+    private final GLBackend delegate;
+    private final Switches capabilities = new Switches();
+    private final Switches clientStates = new Switches();
+    private final Switches attribArrays = new Switches();
+    private final int[] boundTextures = new int[32];
+    private final int[] boundBuffers = new int[2];
+    private int activeTexture;
+    private int blendSource, blendDestination;
+    private float lineWidth;
+    private int textureEnvMode;
+    private int program;
+    private long suppressed, passed;
+    private long lastSuppressed, lastPassed;
+
+    public StateCachingBackend(GLBackend delegate) {
+        this.delegate = delegate;
+        invalidate();
+    }
+
+    public GLBackend getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Forgets all shadowed state, so the next call for each piece of state is passed through again.
+     */
+    public void invalidate() {
+        capabilities.clear();
+        clientStates.clear();
+        attribArrays.clear();
+        Arrays.fill(boundTextures, UNKNOWN);
+        Arrays.fill(boundBuffers, UNKNOWN);
+        activeTexture = UNKNOWN;
+        blendSource = UNKNOWN;
+        blendDestination = UNKNOWN;
+        lineWidth = Float.NaN;
+        textureEnvMode = UNKNOWN;
+        program = UNKNOWN;
+    }
+
+    @Override
+    public void endFrame() {
+        lastSuppressed = suppressed;
+        lastPassed = passed;
+        suppressed = 0;
+        passed = 0;
+        delegate.endFrame();
+    }
+
+    /**
+     * @return the number of redundant state calls dropped during the last finished frame
+     */
+    public long getSuppressedCalls() {
+        return lastSuppressed;
+    }
+
+    /**
+     * @return the number of tracked state calls passed on to the delegate during the last finished frame
+     */
+    public long getPassedCalls() {
+        return lastPassed;
+    }
+
+    private static int bufferSlot(int target) {
+        switch (target) {
+            case GL15.GL_ARRAY_BUFFER:
+                return 0;
+            case GL15.GL_ELEMENT_ARRAY_BUFFER:
+                return 1;
+            default:
+                return -1;
+        }
+    }
+
+    @Override
+    public boolean hasBufferStorage() {
+        return delegate.hasBufferStorage();
+    }
+
+    @Override
+    public boolean hasInstancing() {
+        return delegate.hasInstancing();
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        if (capabilities.set(cap, true)) {
+            delegate.glEnable(cap);
+        }
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        if (capabilities.set(cap, false)) {
+            delegate.glDisable(cap);
+        }
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        if (blendSource == sfactor && blendDestination == dfactor) {
+            ++suppressed;
+        } else {
+            blendSource = sfactor;
+            blendDestination = dfactor;
+            ++passed;
+            delegate.glBlendFunc(sfactor, dfactor);
+        }
+    }
+
+    @Override
+    public void glLineWidth(float width) {
+        if (lineWidth == width) {
+            ++suppressed;
+        } else {
+            lineWidth = width;
+            ++passed;
+            delegate.glLineWidth(width);
+        }
+    }
+
+    @Override
+    public void glTexEnvi(int target, int pname, int param) {
+        if (target == GL11.GL_TEXTURE_ENV && pname == GL11.GL_TEXTURE_ENV_MODE && textureEnvMode == param) {
+            ++suppressed;
+        } else {
+            if (target == GL11.GL_TEXTURE_ENV && pname == GL11.GL_TEXTURE_ENV_MODE) {
+                textureEnvMode = param;
+            }
+            ++passed;
+            delegate.glTexEnvi(target, pname, param);
+        }
+    }
+
+    @Override
+    public void glPixelStorei(int pname, int param) {
+        delegate.glPixelStorei(pname, param);
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        delegate.glViewport(x, y, width, height);
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        delegate.glClearColor(red, green, blue, alpha);
+    }
+
+    @Override
+    public void glClear(int mask) {
+        delegate.glClear(mask);
+    }
+
+    @Override
+    public void glMatrixMode(int mode) {
+        delegate.glMatrixMode(mode);
+    }
+
+    @Override
+    public void glPushMatrix() {
+        delegate.glPushMatrix();
+    }
+
+    @Override
+    public void glPopMatrix() {
+        delegate.glPopMatrix();
+    }
+
+    @Override
+    public void glOrtho(double left, double right, double bottom, double top, double zNear, double zFar) {
+        delegate.glOrtho(left, right, bottom, top, zNear, zFar);
+    }
+
+    @Override
+    public void glTranslatef(float x, float y, float z) {
+        delegate.glTranslatef(x, y, z);
+    }
+
+    @Override
+    public int glGenTextures() {
+        return delegate.glGenTextures();
+    }
+
+    @Override
+    public void glDeleteTextures(int texture) {
+        for (int i = 0; i < boundTextures.length; ++i) {
+            if (boundTextures[i] == texture) {
+                boundTextures[i] = 0;
+            }
+        }
+        delegate.glDeleteTextures(texture);
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        int unit = activeTexture - GL13.GL_TEXTURE0;
+        if (target != GL11.GL_TEXTURE_2D || activeTexture == UNKNOWN || unit < 0 || unit >= boundTextures.length) {
+            ++passed;
+            delegate.glBindTexture(target, texture);
+        } else if (boundTextures[unit] == texture) {
+            ++suppressed;
+        } else {
+            boundTextures[unit] = texture;
+            ++passed;
+            delegate.glBindTexture(target, texture);
+        }
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        if (activeTexture == texture) {
+            ++suppressed;
+        } else {
+            activeTexture = texture;
+            ++passed;
+            delegate.glActiveTexture(texture);
+        }
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        delegate.glTexParameteri(target, pname, param);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalFormat, int width, int height, int border, int format, int type, ByteBuffer pixels) {
+        delegate.glTexImage2D(target, level, internalFormat, width, height, border, format, type, pixels);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalFormat, int width, int height, int border, int format, int type, IntBuffer pixels) {
+        delegate.glTexImage2D(target, level, internalFormat, width, height, border, format, type, pixels);
+    }
+
+    @Override
+    public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, ByteBuffer pixels) {
+        delegate.glTexSubImage2D(target, level, xoffset, yoffset, width, height, format, type, pixels);
+    }
+
+    @Override
+    public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, IntBuffer pixels) {
+        delegate.glTexSubImage2D(target, level, xoffset, yoffset, width, height, format, type, pixels);
+    }
+
+    @Override
+    public void glGetTexImage(int target, int level, int format, int type, IntBuffer pixels) {
+        delegate.glGetTexImage(target, level, format, type, pixels);
+    }
+
+    @Override
+    public void glEnableClientState(int array) {
+        if (clientStates.set(array, true)) {
+            delegate.glEnableClientState(array);
+        }
+    }
+
+    @Override
+    public void glDisableClientState(int array) {
+        if (clientStates.set(array, false)) {
+            delegate.glDisableClientState(array);
+        }
+    }
+
+    @Override
+    public void glVertexPointer(int size, int type, int stride, long pointer) {
+        delegate.glVertexPointer(size, type, stride, pointer);
+    }
+
+    @Override
+    public void glColorPointer(int size, int type, int stride, long pointer) {
+        delegate.glColorPointer(size, type, stride, pointer);
+    }
+
+    @Override
+    public void glTexCoordPointer(int size, int type, int stride, long pointer) {
+        delegate.glTexCoordPointer(size, type, stride, pointer);
+    }
+
+    @Override
+    public void glNormalPointer(int type, int stride, long pointer) {
+        delegate.glNormalPointer(type, stride, pointer);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        if (attribArrays.set(index, true)) {
+            delegate.glEnableVertexAttribArray(index);
+        }
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        if (attribArrays.set(index, false)) {
+            delegate.glDisableVertexAttribArray(index);
+        }
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long pointer) {
+        delegate.glVertexAttribPointer(index, size, type, normalized, stride, pointer);
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        delegate.glDrawArrays(mode, first, count);
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, long indices) {
+        delegate.glDrawElements(mode, count, type, indices);
+    }
+
+    @Override
+    public void glVertexAttribDivisor(int index, int divisor) {
+        delegate.glVertexAttribDivisor(index, divisor);
+    }
+
+    @Override
+    public void glDrawArraysInstanced(int mode, int first, int count, int primcount) {
+        delegate.glDrawArraysInstanced(mode, first, count, primcount);
+    }
+
+    @Override
+    public int glGenBuffers() {
+        return delegate.glGenBuffers();
+    }
+
+    @Override
+    public void glDeleteBuffers(int buffer) {
+        for (int i = 0; i < boundBuffers.length; ++i) {
+            if (boundBuffers[i] == buffer) {
+                boundBuffers[i] = 0;
+            }
+        }
+        delegate.glDeleteBuffers(buffer);
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        int slot = bufferSlot(target);
+        if (slot < 0) {
+            ++passed;
+            delegate.glBindBuffer(target, buffer);
+        } else if (boundBuffers[slot] == buffer) {
+            ++suppressed;
+        } else {
+            boundBuffers[slot] = buffer;
+            ++passed;
+            delegate.glBindBuffer(target, buffer);
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, long size, int usage) {
+        delegate.glBufferData(target, size, usage);
+    }
+
+    @Override
+    public void glBufferData(int target, ByteBuffer data, int usage) {
+        delegate.glBufferData(target, data, usage);
+    }
+
+    @Override
+    public void glBufferData(int target, IntBuffer data, int usage) {
+        delegate.glBufferData(target, data, usage);
+    }
+
+    @Override
+    public void glBufferSubData(int target, long offset, ByteBuffer data) {
+        delegate.glBufferSubData(target, offset, data);
+    }
+
+    @Override
+    public void glBufferStorage(int target, long size, int flags) {
+        delegate.glBufferStorage(target, size, flags);
+    }
+
+    @Override
+    public ByteBuffer glMapBufferRange(int target, long offset, long length, int access) {
+        return delegate.glMapBufferRange(target, offset, length, access);
+    }
+
+    @Override
+    public boolean glUnmapBuffer(int target) {
+        return delegate.glUnmapBuffer(target);
+    }
+
+    @Override
+    public long glFenceSync(int condition, int flags) {
+        return delegate.glFenceSync(condition, flags);
+    }
+
+    @Override
+    public int glClientWaitSync(long sync, int flags, long timeout) {
+        return delegate.glClientWaitSync(sync, flags, timeout);
+    }
+
+    @Override
+    public void glDeleteSync(long sync) {
+        delegate.glDeleteSync(sync);
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        return delegate.glCreateShader(type);
+    }
+
+    @Override
+    public void glShaderSource(int shader, CharSequence source) {
+        delegate.glShaderSource(shader, source);
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        delegate.glCompileShader(shader);
+    }
+
+    @Override
+    public int glGetShaderi(int shader, int pname) {
+        return delegate.glGetShaderi(shader, pname);
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        return delegate.glGetShaderInfoLog(shader);
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        delegate.glDeleteShader(shader);
+    }
+
+    @Override
+    public int glCreateProgram() {
+        return delegate.glCreateProgram();
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        delegate.glAttachShader(program, shader);
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, CharSequence name) {
+        delegate.glBindAttribLocation(program, index, name);
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        delegate.glLinkProgram(program);
+    }
+
+    @Override
+    public int glGetProgrami(int program, int pname) {
+        return delegate.glGetProgrami(program, pname);
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        return delegate.glGetProgramInfoLog(program);
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        if (program == this.program) {
+            this.program = 0;
+        }
+        delegate.glDeleteProgram(program);
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        if (program == this.program) {
+            ++suppressed;
+        } else {
+            this.program = program;
+            ++passed;
+            delegate.glUseProgram(program);
+        }
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, CharSequence name) {
+        return delegate.glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public void glUniform1i(int location, int value) {
+        delegate.glUniform1i(location, value);
+    }
+
+    /**
+     * Known on/off state for small integer keys such as GL capabilities. Keys outside the tracked range are never cached.
+     */
+    private class Switches {
+        private static final int RANGE = 0x10000;
+        private final BitSet known = new BitSet();
+        private final BitSet enabled = new BitSet();
+
+        /**
+         * @return true if the call has to be passed on
+         */
+        boolean set(int key, boolean value) {
+            if (key < 0 || key >= RANGE) {
+                ++passed;
+                return true;
+            } else if (known.get(key) && enabled.get(key) == value) {
+                ++suppressed;
+                return false;
+            } else {
+                known.set(key);
+                enabled.set(key, value);
+                ++passed;
+                return true;
+            }
+        }
+
+        void clear() {
+            known.clear();
+            enabled.clear();
+        }
+    }
+}
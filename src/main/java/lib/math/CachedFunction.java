@@ -1,25 +1,210 @@
 package lib.math;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A function with an index of its integral. The function is sampled once per cell of a grid and the running sum of the
+ * cells is kept, so the integral over any covered range is the difference of two table lookups, each interpolated
+ * linearly within its cell. Grids have power of two steps: a precision p is served by the grid with the largest step not
+ * above p, so all precisions in [2^k, 2^(k+1)) share one table. A table is extended lazily to either side when a range
+ * goes beyond it. Cells of the midpoint rule are used, so NaN values are left out as in {@link RenderMaths#integrate}.
+ * <p>
+ * The total number of cells over all tables is bounded; the least recently used tables are evicted first, and a table
+ * asked to jump further from its range than the bound allows starts again at the new range. Not thread-safe.
+ */
 public class CachedFunction implements Function {
+    public static final int DEFAULT_MAX_CELLS = 1 << 20;
+    private static final int BATCH = 256;
     private final Function function;
-    private double lastStart, lastEnd, lastPrecision, lastArea;
+    private final int maxCells;
+    private final LinkedHashMap<Integer, Table> tables = new LinkedHashMap<>(16, 0.75f, true);
+    private final double[] batch = new double[BATCH];
+    private long cachedCells;
+    private long evaluations;
 
     public CachedFunction(Function function) {
+        this(function, DEFAULT_MAX_CELLS);
+    }
+
+    /**
+     * @param maxCells the maximum number of cells kept over all tables, 8 bytes each
+     */
+    public CachedFunction(Function function, int maxCells) {
         this.function = function;
+        this.maxCells = maxCells;
     }
 
+    /**
+     * Integrates the function from start to end, with cells at most precision wide. The result is negative if end is below
+     * start. Ranges spanning more cells than the cache may hold are integrated directly with
+     * {@link RenderMaths#integrate}.
+     */
     public double integrate(double start, double end, double precision) {
-        if (lastStart != start || lastEnd != end || lastPrecision != precision) {
-            lastStart = start;
-            lastEnd = end;
-            lastPrecision = precision;
-            lastArea = RenderMaths.integrate(function, start, end, precision);
+        if (!(precision > 0)) {
+            throw new IllegalArgumentException("Precision must be positive: " + precision);
+        }
+        if (start == end) {
+            return 0;
+        }
+
+        int exponent = Math.getExponent(precision);
+        double step = Math.scalb(1.0, exponent);
+        long from = (long) Math.floor(Math.min(start, end) / step);
+        long to = (long) Math.floor(Math.max(start, end) / step) + 1;
+        if (to - from > maxCells) {
+            return start < end ? RenderMaths.integrate(function, start, end, precision) : -RenderMaths.integrate(function, end, start, precision);
+        }
+
+        Table table = tables.get(exponent);
+        if (table == null) {
+            table = new Table(step, from);
+            tables.put(exponent, table);
+        }
+        long before = table.size();
+        table.cover(from, to);
+        cachedCells += table.size() - before;
+        evict(table);
+
+        return table.prefix(end) - table.prefix(start);
+    }
+
+    private void evict(Table current) {
+        Iterator<Table> iterator = tables.values().iterator();
+        while (cachedCells > maxCells && iterator.hasNext()) {
+            Table table = iterator.next();
+            if (table != current) {
+                cachedCells -= table.size();
+                iterator.remove();
+            }
         }
-        return lastArea;
+    }
+
+    /**
+     * Drops all tables, for functions whose values changed.
+     */
+    public void invalidate() {
+        tables.clear();
+        cachedCells = 0;
     }
 
     @Override
     public double apply(double x) {
         return function.apply(x);
     }
+
+    @Override
+    public void applyAll(double[] xs, double[] out, int from, int to) {
+        function.applyAll(xs, out, from, to);
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    /**
+     * @return the number of cells currently cached over all tables
+     */
+    public long getCachedCells() {
+        return cachedCells;
+    }
+
+    /**
+     * @return the number of function evaluations made to build tables
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Running sums of the cells of one grid, kept in two arrays growing away from the base cell: above[i] is the integral
+     * over the cells [base, base + i) and below[i] the integral over [base - i, base).
+     */
+    private final class Table {
+        private final double step;
+        private long base;
+        private double[] above = new double[64];
+        private double[] below = new double[64];
+        private int aboveCount, belowCount;
+
+        private Table(double step, long base) {
+            this.step = step;
+            this.base = base;
+        }
+
+        private long size() {
+            return aboveCount + belowCount;
+        }
+
+        /**
+         * Extends the table to the cells [from, to).
+         */
+        private void cover(long from, long to) {
+            if (Math.max(to, base + aboveCount) - Math.min(from, base - belowCount) > maxCells) {
+                base = from;
+                aboveCount = 0;
+                belowCount = 0;
+            }
+
+            if (to - base > aboveCount) {
+                int count = (int) (to - base);
+                if (above.length <= count) {
+                    above = Arrays.copyOf(above, Math.max(above.length * 2, count + 1));
+                }
+                for (int i = aboveCount; i < count; i += BATCH) {
+                    int cells = Math.min(BATCH, count - i);
+                    cells(base + i, cells, 1);
+                    for (int j = 0; j < cells; ++j) {
+                        above[i + j + 1] = above[i + j] + batch[j];
+                    }
+                }
+                aboveCount = count;
+            }
+
+            if (base - from > belowCount) {
+                int count = (int) (base - from);
+                if (below.length <= count) {
+                    below = Arrays.copyOf(below, Math.max(below.length * 2, count + 1));
+                }
+                for (int i = belowCount; i < count; i += BATCH) {
+                    int cells = Math.min(BATCH, count - i);
+                    cells(base - i - 1, cells, -1);
+                    for (int j = 0; j < cells; ++j) {
+                        below[i + j + 1] = below[i + j] + batch[j];
+                    }
+                }
+                belowCount = count;
+            }
+        }
+
+        /**
+         * Integrates count cells starting at the given index and stepping by direction into the batch array.
+         */
+        private void cells(long index, int count, int direction) {
+            for (int j = 0; j < count; ++j) {
+                batch[j] = (index + (long) j * direction + 0.5) * step;
+            }
+            function.applyAll(batch, batch, 0, count);
+            for (int j = 0; j < count; ++j) {
+                double value = batch[j];
+                batch[j] = value == value ? value * step : 0; //Omit NaN values
+            }
+            evaluations += count;
+        }
+
+        /**
+         * @return the integral from the base cell to x, which must lie within the table
+         */
+        private double prefix(double x) {
+            double position = x / step;
+            long index = (long) Math.floor(position);
+            double lower = sum(index);
+            return lower + (position - index) * (sum(index + 1) - lower);
+        }
+
+        private double sum(long index) {
+            return index >= base ? above[(int) (index - base)] : -below[(int) (base - index)];
+        }
+    }
 }
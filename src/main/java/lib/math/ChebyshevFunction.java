@@ -0,0 +1,380 @@
+package lib.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Piecewise Chebyshev approximation of an expensive function. The range is covered by intervals, each fitted from 32
+ * samples at Chebyshev nodes and truncated to the lowest degree whose dropped coefficients stay within the tolerance;
+ * intervals whose fit is not within the tolerance at the points between the nodes are halved. Values are then computed
+ * from the polynomials with Clenshaw's recurrence. Intervals the function is finite at none of the nodes of, and intervals
+ * it cannot be fitted on down to the smallest width, evaluate the function itself. Intervals are halved level by level, so
+ * a budget of pieces that runs out is spread over the whole range rather than spent on the first hard interval.
+ * <p>
+ * Arguments outside the fitted range extend it by fitting intervals next to it while pieces are left. Arguments far from
+ * it, or beyond a full fit, evaluate the function itself; {@link #setRange} moves the fit. The fit is replaced as a whole,
+ * so apply may be called from several threads.
+ */
+public class ChebyshevFunction implements Function {
+    private static final int NODES = 32;
+    private static final int MAX_PIECES = 4096;
+    private static final int MAX_DEPTH = 20;
+    private static final double ROUNDING = 0x1p-42;
+    private static final double[] NODE_POSITIONS = new double[NODES];
+    private static final double[] CHECK_POSITIONS = new double[NODES - 1];
+    private final Function function;
+    private final double tolerance;
+    private final double width;
+    private volatile Fit fit;
+    private long evaluations;
+    private int refits;
+    private volatile double sink;
+
+    static {
+        for (int j = 0; j < NODES; ++j) {
+            NODE_POSITIONS[j] = Math.cos(Math.PI * (j + 0.5) / NODES);
+        }
+        for (int j = 0; j < NODES - 1; ++j) {
+            CHECK_POSITIONS[j] = Math.cos(Math.PI * (j + 1) / NODES);
+        }
+    }
+
+    /**
+     * Fits the function over [start, end].
+     *
+     * @param tolerance target absolute error, relaxed to 2^-42 of the function's value where that is larger
+     */
+    public ChebyshevFunction(Function function, double start, double end, double tolerance) {
+        this.function = function;
+        this.tolerance = tolerance;
+        this.width = end - start;
+        setRange(start, end);
+    }
+
+    /**
+     * Fits the function over a new range, unless it is the range already fitted.
+     */
+    public synchronized void setRange(double start, double end) {
+        if (!(end > start)) {
+            throw new IllegalArgumentException("Empty range [" + start + ", " + end + "]");
+        }
+        Fit current = fit;
+        if (current == null || current.start != start || current.end != end) {
+            fit = new Fit(fitPieces(start, end, (end - start) / (1 << MAX_DEPTH), MAX_PIECES));
+            ++refits;
+        }
+    }
+
+    @Override
+    public double apply(double x) {
+        Fit current = fit;
+        if (!(x >= current.start && x <= current.end)) {
+            if (x != x || !isExtensible(current, x)) {
+                return function.apply(x);
+            }
+            current = extend(x);
+            if (current == null) {
+                return function.apply(x);
+            }
+        }
+        int index = Arrays.binarySearch(current.starts, x);
+        Piece piece = current.pieces[index >= 0 ? Math.min(index, current.pieces.length - 1) : -index - 2];
+        return piece.coefficients == null ? function.apply(x) : piece.evaluate(x);
+    }
+
+    /**
+     * @return the fit extended to x, or null if x can no longer be reached
+     */
+    private synchronized Fit extend(double x) {
+        Fit current = fit;
+        if (x >= current.start && x <= current.end) {
+            return current;
+        } else if (!isExtensible(current, x)) {
+            return null;
+        }
+
+        double span = current.end - current.start;
+        double distance = x < current.start ? current.start - x : x - current.end;
+        double step = Math.max(distance, Math.min(span, width));
+        double minWidth = width / (1 << MAX_DEPTH);
+        int budget = MAX_PIECES - current.pieces.length;
+        List<Piece> pieces;
+        if (x < current.start) {
+            pieces = fitPieces(current.start - step, current.start, minWidth, budget);
+            pieces.addAll(Arrays.asList(current.pieces));
+        } else {
+            pieces = new ArrayList<>(Arrays.asList(current.pieces));
+            pieces.addAll(fitPieces(current.end, current.end + step, minWidth, budget));
+        }
+        fit = new Fit(pieces);
+        return fit;
+    }
+
+    /**
+     * @return true if the fit has pieces left and x is close enough to extend the fit to it
+     */
+    private static boolean isExtensible(Fit fit, double x) {
+        double distance = x < fit.start ? fit.start - x : x - fit.end;
+        return fit.pieces.length < MAX_PIECES && distance <= 4 * (fit.end - fit.start);
+    }
+
+    /**
+     * Covers [start, end] with at most maxPieces pieces. Intervals that do not fit are halved level by level, so the budget
+     * is spread over the whole range instead of being spent on the first interval that is hard to fit.
+     */
+    private List<Piece> fitPieces(double start, double end, double minWidth, int maxPieces) {
+        List<Piece> pieces = new ArrayList<>();
+        List<double[]> intervals = new ArrayList<>();
+        intervals.add(new double[]{start, end});
+        int count = 1;
+
+        for (int depth = 0; !intervals.isEmpty(); ++depth) {
+            List<double[]> next = new ArrayList<>();
+            for (double[] interval : intervals) {
+                double low = interval[0], high = interval[1];
+                Piece piece = fitPiece(low, high);
+                if (piece != null) {
+                    pieces.add(piece);
+                } else if (depth < MAX_DEPTH && high - low > minWidth && count < maxPieces) {
+                    double center = (low + high) / 2;
+                    next.add(new double[]{low, center});
+                    next.add(new double[]{center, high});
+                    ++count;
+                } else {
+                    pieces.add(new Piece(low, high, null, 0));
+                }
+            }
+            intervals = next;
+        }
+
+        pieces.sort(Comparator.comparingDouble(piece -> piece.start));
+        return pieces;
+    }
+
+    /**
+     * Fits one interval. Where the tolerance is finer than 2^-42 of the function's magnitude, that relative error is the
+     * target instead: the coefficients of a large function do not get below its rounding, and splitting further would not
+     * change that.
+     *
+     * @return the fitted piece, a piece evaluating the function itself if it is finite at none of the nodes or too large for
+     * its coefficients to be finite, or null if it is not finite at some nodes or the fit is not within the tolerance
+     */
+    private Piece fitPiece(double start, double end) {
+        double center = (start + end) / 2, half = (end - start) / 2;
+        double[] values = new double[NODES];
+        for (int j = 0; j < NODES; ++j) {
+            values[j] = center + half * NODE_POSITIONS[j];
+        }
+        function.applyAll(values, values, 0, NODES);
+        evaluations += NODES;
+        if (!isFinite(values)) {
+            return isAnyFinite(values) ? null : new Piece(start, end, null, 0);
+        }
+
+        double smallest = Double.POSITIVE_INFINITY, largest = 0;
+        for (double value : values) {
+            smallest = Math.min(smallest, Math.abs(value));
+            largest = Math.max(largest, Math.abs(value));
+        }
+
+        double[] coefficients = new double[NODES];
+        for (int k = 0; k < NODES; ++k) {
+            double sum = 0;
+            for (int j = 0; j < NODES; ++j) {
+                sum += values[j] * Math.cos(Math.PI * k * (j + 0.5) / NODES);
+            }
+            coefficients[k] = sum * (k == 0 ? 1.0 : 2.0) / NODES;
+        }
+        if (!isFinite(coefficients)) {
+            return new Piece(start, end, null, 0);
+        }
+
+        double tail = Math.abs(coefficients[NODES - 1]) + Math.abs(coefficients[NODES - 2]) + Math.abs(coefficients[NODES - 3]);
+        if (tail > Math.max(tolerance, largest * ROUNDING) / 4) {
+            return null;
+        }
+        int degree = NODES - 1;
+        double dropped = Math.abs(coefficients[degree]);
+        double allowed = Math.max(tolerance, smallest * ROUNDING) / 2;
+        while (degree > 0 && dropped <= allowed) {
+            dropped += Math.abs(coefficients[--degree]);
+        }
+        Piece piece = new Piece(start, end, Arrays.copyOf(coefficients, degree + 1), 0);
+
+        double[] checks = new double[NODES - 1];
+        for (int j = 0; j < checks.length; ++j) {
+            checks[j] = center + half * CHECK_POSITIONS[j];
+        }
+        double[] approximated = new double[checks.length];
+        for (int j = 0; j < checks.length; ++j) {
+            approximated[j] = piece.evaluate(checks[j]);
+        }
+        function.applyAll(checks, checks, 0, checks.length);
+        evaluations += checks.length;
+
+        double error = 0;
+        for (int j = 0; j < checks.length; ++j) {
+            double difference = Math.abs(checks[j] - approximated[j]);
+            if (!(difference <= Math.max(tolerance, Math.abs(checks[j]) * ROUNDING))) {
+                return null;
+            }
+            error = Math.max(error, difference);
+        }
+        return new Piece(start, end, piece.coefficients, error);
+    }
+
+    private static boolean isAnyFinite(double[] values) {
+        for (double value : values) {
+            if (value - value == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isFinite(double[] values) {
+        for (double value : values) {
+            if (value - value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public double getStart() {
+        return fit.start;
+    }
+
+    public double getEnd() {
+        return fit.end;
+    }
+
+    public int getPieceCount() {
+        return fit.pieces.length;
+    }
+
+    /**
+     * @return the number of pieces that evaluate the function itself
+     */
+    public int getDirectPieceCount() {
+        int count = 0;
+        for (Piece piece : fit.pieces) {
+            if (piece.coefficients == null) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the largest degree of the fitted polynomials
+     */
+    public int getMaxDegree() {
+        int degree = 0;
+        for (Piece piece : fit.pieces) {
+            if (piece.coefficients != null) {
+                degree = Math.max(degree, piece.coefficients.length - 1);
+            }
+        }
+        return degree;
+    }
+
+    /**
+     * @return the largest difference from the function found at the check points between the nodes
+     */
+    public double getMaxError() {
+        double error = 0;
+        for (Piece piece : fit.pieces) {
+            error = Math.max(error, piece.error);
+        }
+        return error;
+    }
+
+    /**
+     * @return the number of function evaluations made for fitting
+     */
+    public synchronized long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return the number of fits started from scratch by {@link #setRange}, including the first
+     */
+    public synchronized int getRefits() {
+        return refits;
+    }
+
+    /**
+     * Times the function and the approximation at evenly spread points of the fitted range. Meaningful once both are warmed
+     * up, so call it after some frames rather than right after construction.
+     *
+     * @return the time taken by the function divided by the time taken by the approximation
+     */
+    public double measureSpeedup(int samples) {
+        Fit current = fit;
+        double[] xs = new double[samples];
+        for (int i = 0; i < samples; ++i) {
+            xs[i] = current.start + (current.end - current.start) * (i + 0.5) / samples;
+        }
+
+        double sum = 0;
+        long time = System.nanoTime();
+        for (double x : xs) {
+            sum += function.apply(x);
+        }
+        long functionTime = System.nanoTime() - time;
+        time = System.nanoTime();
+        for (double x : xs) {
+            sum += apply(x);
+        }
+        long approximationTime = System.nanoTime() - time;
+        sink = sum;
+        return (double) functionTime / Math.max(1, approximationTime);
+    }
+
+    private static final class Piece {
+        private final double start, end;
+        private final double[] coefficients;
+        private final double error;
+
+        private Piece(double start, double end, double[] coefficients, double error) {
+            this.start = start;
+            this.end = end;
+            this.coefficients = coefficients;
+            this.error = error;
+        }
+
+        private double evaluate(double x) {
+            double t = (2 * x - (start + end)) / (end - start);
+            double b1 = 0, b2 = 0;
+            for (int k = coefficients.length - 1; k >= 1; --k) {
+                double b = coefficients[k] + 2 * t * b1 - b2;
+                b2 = b1;
+                b1 = b;
+            }
+            return coefficients[0] + t * b1 - b2;
+        }
+    }
+
+    private static final class Fit {
+        private final Piece[] pieces;
+        private final double[] starts;
+        private final double start, end;
+
+        private Fit(List<Piece> pieces) {
+            this.pieces = pieces.toArray(new Piece[0]);
+            this.starts = new double[this.pieces.length];
+            for (int i = 0; i < starts.length; ++i) {
+                starts[i] = this.pieces[i].start;
+            }
+            this.start = this.pieces[0].start;
+            this.end = this.pieces[this.pieces.length - 1].end;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package lib.math;
+
+public interface Field {
+    double apply(double x, double y);
+}
@@ -2,4 +2,33 @@ package lib.math;
 
 public interface Function {
     double apply(double x);
+
+    /**
+     * Evaluates the function at xs[from..to) into out[from..to). xs and out may be the same array. Implementations with a
+     * cheap body should override this with a plain loop, which saves an interface call per value and can be vectorized.
+     */
+    default void applyAll(double[] xs, double[] out, int from, int to) {
+        for (int i = from; i < to; i++) {
+            out[i] = apply(xs[i]);
+        }
+    }
+
+    default Function add(Function other) {
+        return Functions.add(this, other);
+    }
+
+    default Function multiply(Function other) {
+        return Functions.multiply(this, other);
+    }
+
+    /**
+     * @return the function x -> apply(inner.apply(x))
+     */
+    default Function compose(Function inner) {
+        return Functions.compose(this, inner);
+    }
+
+    default Function scale(double factor) {
+        return Functions.scale(this, factor);
+    }
 }
@@ -0,0 +1,156 @@
+package lib.math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Globally adaptive 7-point Gauss / 15-point Kronrod quadrature. The interval with the largest error estimate, the
+ * difference between its Gauss and Kronrod results, is bisected until the total estimate is within the tolerance or the
+ * evaluation budget is spent. The nodes exclude the interval ends, so integrable end point singularities are handled.
+ * Intervals on which the function is NaN or infinite at every node are left out; intervals on which it is so at some nodes
+ * are bisected until they are too small to split and then left out.
+ */
+public class GaussKronrodIntegrator implements Integrator {
+    private static final double[] NODES = {
+            0.991455371120812639206854697526329, 0.949107912342758524526189684047851, 0.864864423359769072789712788640926,
+            0.741531185599394439863864773280788, 0.586087235467691130294144845693013, 0.405845151377397166906606412076961,
+            0.207784955007898467600689403773245, 0.0};
+    private static final double[] KRONROD_WEIGHTS = {
+            0.022935322010529224963732008058970, 0.063092092629978553290700663189204, 0.104790010322250183839876322541518,
+            0.140653259715525918745189590510238, 0.169004726639267902826583426598550, 0.190350578064785409913256402421014,
+            0.204432940075298892414161999234649, 0.209482141084727828012999174891714};
+    private static final double[] GAUSS_WEIGHTS = {
+            0.129484966168869693270611432679082, 0.279705391489276667901467771423780, 0.381830050505118944950369775488975,
+            0.417959183673469387755102040816327};
+    private static final double MIN_WIDTH = 1e-10;
+    private final double tolerance;
+    private final int maxEvaluations;
+
+    public GaussKronrodIntegrator(double tolerance) {
+        this(tolerance, 100_000);
+    }
+
+    /**
+     * @param tolerance      target absolute error
+     * @param maxEvaluations evaluation budget; when it runs out the current estimate is returned as not converged
+     */
+    public GaussKronrodIntegrator(double tolerance, int maxEvaluations) {
+        this.tolerance = tolerance;
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    @Override
+    public Integral integrate(Function function, double start, double end) {
+        if (start == end) {
+            return new Integral(0, 0, 0, true, 0);
+        }
+
+        Run run = new Run();
+        double minWidth = Math.abs(end - start) * MIN_WIDTH;
+        run.add(new Segment(function, start, end));
+
+        while ((run.nonFinite > 0 || run.queuedError > tolerance) && !run.queue.isEmpty() && run.evaluations + 30 <= maxEvaluations) {
+            Segment worst = run.poll();
+            if (Math.abs(worst.end - worst.start) < minWidth) {
+                if (SimpsonIntegrator.isFinite(worst.value)) {
+                    run.done.add(worst);
+                } else {
+                    ++run.skipped;
+                }
+                continue;
+            }
+
+            double middle = (worst.start + worst.end) / 2;
+            run.add(new Segment(function, worst.start, middle));
+            run.add(new Segment(function, middle, worst.end));
+        }
+
+        double value = 0, error = 0;
+        boolean converged = run.nonFinite == 0;
+        for (Segment segment : run.queue) {
+            if (SimpsonIntegrator.isFinite(segment.value)) {
+                value += segment.value;
+                error += segment.error;
+            } else {
+                ++run.skipped;
+            }
+        }
+        for (Segment segment : run.done) {
+            value += segment.value;
+            error += segment.error;
+        }
+        return new Integral(value, error, run.evaluations, converged && error <= tolerance, run.skipped);
+    }
+
+    private static final class Run {
+        private final PriorityQueue<Segment> queue = new PriorityQueue<>((a, b) -> Double.compare(b.error, a.error));
+        private final List<Segment> done = new ArrayList<>();
+        private double queuedError;
+        private int nonFinite;
+        private int evaluations;
+        private int skipped;
+
+        private void add(Segment segment) {
+            evaluations += 15;
+            if (segment.empty) {
+                ++skipped;
+            } else if (SimpsonIntegrator.isFinite(segment.value)) {
+                queue.add(segment);
+                queuedError += segment.error;
+            } else {
+                queue.add(segment);
+                ++nonFinite;
+            }
+        }
+
+        private Segment poll() {
+            Segment segment = queue.poll();
+            if (SimpsonIntegrator.isFinite(segment.value)) {
+                queuedError -= segment.error;
+            } else {
+                --nonFinite;
+            }
+            return segment;
+        }
+    }
+
+    private static final class Segment {
+        private final double start, end;
+        private final double value, error;
+        private final boolean empty;
+
+        private Segment(Function function, double start, double end) {
+            this.start = start;
+            this.end = end;
+            double center = (start + end) / 2;
+            double half = (end - start) / 2;
+            double[] values = new double[15];
+            values[14] = center;
+            for (int i = 0; i < 7; ++i) {
+                values[i * 2] = center - half * NODES[i];
+                values[i * 2 + 1] = center + half * NODES[i];
+            }
+            function.applyAll(values, values, 0, 15);
+
+            int finite = 0;
+            for (double value : values) {
+                finite += SimpsonIntegrator.isFinite(value) ? 1 : 0;
+            }
+            double kronrod = values[14] * KRONROD_WEIGHTS[7];
+            double gauss = values[14] * GAUSS_WEIGHTS[3];
+            for (int i = 0; i < 7; ++i) {
+                double sum = values[i * 2] + values[i * 2 + 1];
+                kronrod += KRONROD_WEIGHTS[i] * sum;
+                if (i % 2 == 1) {
+                    gauss += GAUSS_WEIGHTS[i / 2] * sum;
+                }
+            }
+
+            this.value = kronrod * half;
+            double error = Math.abs((kronrod - gauss) * half);
+            this.error = SimpsonIntegrator.isFinite(value) ? error : Double.POSITIVE_INFINITY;
+            this.empty = finite == 0;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package lib.math;
+
+/**
+ * Result of a numerical integration: the estimate, an estimate of its absolute error and the work spent on it.
+ */
+public class Integral {
+    private final double value;
+    private final double error;
+    private final int evaluations;
+    private final boolean converged;
+    private final int skipped;
+
+    public Integral(double value, double error, int evaluations, boolean converged, int skipped) {
+        this.value = value;
+        this.error = error;
+        this.evaluations = evaluations;
+        this.converged = converged;
+        this.skipped = skipped;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return the estimated absolute error, or NaN if the strategy has no error estimate
+     */
+    public double getError() {
+        return error;
+    }
+
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return false if the evaluation budget ran out before the requested tolerance was reached
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * @return the number of subintervals left out because the function was NaN or infinite on them even after refining
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public String toString() {
+        return value + " +- " + error + " (" + evaluations + " evaluations" + (converged ? "" : ", not converged") + (skipped > 0 ? ", " + skipped + " skipped" : "") + ")";
+    }
+}
@@ -0,0 +1,12 @@
+package lib.math;
+
+/**
+ * A numerical integration strategy.
+ */
+public interface Integrator {
+    Integral integrate(Function function, double start, double end);
+
+    default double apply(Function function, double start, double end) {
+        return integrate(function, start, end).getValue();
+    }
+}
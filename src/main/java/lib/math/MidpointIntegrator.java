@@ -0,0 +1,19 @@
+package lib.math;
+
+/**
+ * The fixed step midpoint rule of {@link RenderMaths#integrate(Function, double, double, double)}: one evaluation per
+ * step of the given width, NaN values are left out. It has no error estimate.
+ */
+public class MidpointIntegrator implements Integrator {
+    private final double precision;
+
+    public MidpointIntegrator(double precision) {
+        this.precision = precision;
+    }
+
+    @Override
+    public Integral integrate(Function function, double start, double end) {
+        int evaluations = Math.max(0, (int) ((end - start) / precision));
+        return new Integral(RenderMaths.integrate(function, start, end, precision), Double.NaN, evaluations, true, 0);
+    }
+}
@@ -0,0 +1,112 @@
+package lib.math;
+
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * A series whose terms follow the recurrence term(n + 1, x) = term(n, x) * multiplier(x) / divisor(n), as power series with
+ * factorial denominators do. Sums derive every term from the previous one with one multiply and one divide, instead of
+ * computing powers and factorials per term, so they are linear in the number of terms and stay finite past 20!.
+ * <p>
+ * Early stopping assumes the divisors grow in magnitude with n: once a term is within the tolerance of the sum and the
+ * ratio of the terms is below 1, the remaining terms are taken to be negligible.
+ */
+public class RecurrenceSeries implements Series {
+    private final Function first;
+    private final Function multiplier;
+    private final LongToDoubleFunction divisor;
+
+    /**
+     * @param first      the term 0 as a function of x
+     * @param multiplier the part of the term ratio depending on x
+     * @param divisor    the part of the term ratio depending on n
+     */
+    public RecurrenceSeries(Function first, Function multiplier, LongToDoubleFunction divisor) {
+        this.first = first;
+        this.multiplier = multiplier;
+        this.divisor = divisor;
+    }
+
+    /**
+     * Runs the recurrence from term 0, so single terms cost O(n); use the sums for consecutive terms.
+     */
+    @Override
+    public double term(long n, double x) {
+        double term = first.apply(x);
+        double q = multiplier.apply(x);
+        for (long k = 0; k < n; k++) {
+            term = term * q / divisor.applyAsDouble(k);
+        }
+        return term;
+    }
+
+    @Override
+    public double sum(double x, long from, long to) {
+        return sum(x, from, to, 0);
+    }
+
+    @Override
+    public double sum(double x, long from, long to, double tolerance) {
+        double term = first.apply(x);
+        double q = multiplier.apply(x);
+        double sum = 0;
+
+        for (long n = 0; n <= to; n++) {
+            double d = divisor.applyAsDouble(n);
+            if (n >= from) {
+                sum += term;
+                if (Math.abs(term) <= tolerance * Math.abs(sum) && Math.abs(q) < Math.abs(d)) {
+                    break;
+                }
+            }
+            term = term * q / d;
+        }
+        return sum;
+    }
+
+    @Override
+    public void sum(double[] xs, double[] out, long from, long to) {
+        sum(xs, out, from, to, 0);
+    }
+
+    /**
+     * Runs the recurrence for all values at once, one term index at a time over plain arrays, so the inner loops can be
+     * vectorized. Stops early once every value has converged.
+     */
+    @Override
+    public void sum(double[] xs, double[] out, long from, long to, double tolerance) {
+        int count = xs.length;
+        double[] terms = new double[count];
+        double[] qs = new double[count];
+        double largestQ = 0;
+        for (int i = 0; i < count; i++) {
+            terms[i] = first.apply(xs[i]);
+            qs[i] = multiplier.apply(xs[i]);
+            largestQ = Math.max(largestQ, Math.abs(qs[i]));
+            out[i] = 0;
+        }
+
+        for (long n = 0; n <= to; n++) {
+            double d = divisor.applyAsDouble(n);
+            if (n >= from) {
+                for (int i = 0; i < count; i++) {
+                    out[i] += terms[i];
+                }
+                if (tolerance > 0 && largestQ < Math.abs(d) && converged(terms, out, tolerance)) {
+                    break;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                terms[i] = terms[i] * qs[i] / d;
+            }
+        }
+    }
+
+    private static boolean converged(double[] terms, double[] sums, double tolerance) {
+        for (int i = 0; i < terms.length; i++) {
+            if (!(Math.abs(terms[i]) <= tolerance * Math.abs(sums[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
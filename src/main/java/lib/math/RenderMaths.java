@@ -3,6 +3,7 @@ package lib.math;
 public class RenderMaths {
     public static final double EPS = 0.0000001;
     public static final double ONE_MIN_EPS = 1.0 - EPS;
+    private static final int BATCH = 256;
 
     public static int clamp(int num, int min, int max) {
         return num < min ? min : Math.min(num, max);
@@ -34,11 +35,19 @@ public class RenderMaths {
     public static double integrate(Function function, double start, double end, double precision) {
         double result = 0;
         int n = (int)((end - start) / precision);
+        double[] values = new double[Math.max(0, Math.min(n, BATCH))];
 
-        for(int i = 0; i < n; i++) {
-            double value = function.apply(start + precision * (i + 0.5));
-            if (value == value) { //Omit NaN values
-                result += value;
+        for(int first = 0; first < n; first += BATCH) {
+            int count = Math.min(BATCH, n - first);
+            for (int i = 0; i < count; i++) {
+                values[i] = start + precision * (first + i + 0.5);
+            }
+            function.applyAll(values, values, 0, count);
+            for (int i = 0; i < count; i++) {
+                double value = values[i];
+                if (value == value) { //Omit NaN values
+                    result += value;
+                }
             }
         }
 
@@ -1,17 +1,28 @@
 package lib.math;
 
-import static java.lang.Math.pow;
-import static lib.math.RenderMaths.factorial;
+import java.util.Arrays;
 
 public interface Series {
-    Series SIN = (n, x) -> pow(-1, n) * pow(x, 2 * n + 1) / factorial(2 * n + 1);
-    Series COS = (n, x) -> pow(-1, n) * pow(x, 2 * n) / factorial(2 * n);
-    Series EXP = (n, x) -> pow(x, n) / factorial(n);
+    Series SIN = new RecurrenceSeries(x -> x, x -> -x * x, n -> (2 * n + 2) * (2 * n + 3));
+    Series COS = new RecurrenceSeries(x -> 1, x -> -x * x, n -> (2 * n + 1) * (2 * n + 2));
+    Series EXP = new RecurrenceSeries(x -> 1, x -> x, n -> n + 1);
 
     double term(long n, double x);
 
     default Function sum(long from, long to) {
-        return x -> sum(x, from, to);
+        return new Function() {
+            @Override
+            public double apply(double x) {
+                return sum(x, from, to);
+            }
+
+            @Override
+            public void applyAll(double[] xs, double[] out, int first, int last) {
+                double[] values = Arrays.copyOfRange(xs, first, last);
+                sum(values, values, from, to);
+                System.arraycopy(values, 0, out, first, values.length);
+            }
+        };
     }
 
     default double sum(double x, long from, long to) {
@@ -22,4 +33,36 @@ public interface Series {
         }
         return sum;
     }
+
+    /**
+     * Sums the terms from..to, stopping early at the first term whose magnitude is within tolerance times the magnitude of
+     * the sum so far. Terms are expected to decrease in magnitude from there on. A tolerance of 0 sums all terms, as
+     * {@link #sum(double, long, long)} does.
+     */
+    default double sum(double x, long from, long to, double tolerance) {
+        double sum = 0;
+        for (long n = from; n <= to; n++) {
+            double term = term(n, x);
+            sum += term;
+            if (tolerance > 0 && sum != 0 && Math.abs(term) <= tolerance * Math.abs(sum)) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Sums the terms from..to for every value of xs into the same index of out. xs and out may be the same array.
+     */
+    default void sum(double[] xs, double[] out, long from, long to) {
+        for (int i = 0; i < xs.length; i++) {
+            out[i] = sum(xs[i], from, to);
+        }
+    }
+
+    default void sum(double[] xs, double[] out, long from, long to, double tolerance) {
+        for (int i = 0; i < xs.length; i++) {
+            out[i] = sum(xs[i], from, to, tolerance);
+        }
+    }
 }
@@ -0,0 +1,92 @@
+package lib.math;
+
+/**
+ * Adaptive Simpson quadrature. Intervals are halved until the difference between the Simpson estimates of an interval and
+ * of its halves is within the tolerance share of that interval; the difference also gives the error estimate. The range is
+ * always split into at least 32 intervals first, so features between the first few samples are not missed. Intervals on
+ * which the function is NaN or infinite are left out, after halving them down to the depth limit if they are only partly
+ * so.
+ */
+public class SimpsonIntegrator implements Integrator {
+    private static final int MIN_DEPTH = 5;
+    private static final int MAX_DEPTH = 50;
+    private final double tolerance;
+    private final int maxEvaluations;
+
+    public SimpsonIntegrator(double tolerance) {
+        this(tolerance, 1_000_000);
+    }
+
+    /**
+     * @param tolerance      target absolute error
+     * @param maxEvaluations evaluation budget; when it runs out the current estimate is returned as not converged
+     */
+    public SimpsonIntegrator(double tolerance, int maxEvaluations) {
+        this.tolerance = tolerance;
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    @Override
+    public Integral integrate(Function function, double start, double end) {
+        if (start == end) {
+            return new Integral(0, 0, 0, true, 0);
+        }
+
+        Run run = new Run(function);
+        double fa = run.apply(start);
+        double fm = run.apply((start + end) / 2);
+        double fb = run.apply(end);
+        double whole = (end - start) / 6 * (fa + 4 * fm + fb);
+        double value = run.step(start, end, fa, fm, fb, whole, tolerance, 0);
+        return new Integral(value, run.error, run.evaluations, run.converged, run.skipped);
+    }
+
+    private class Run {
+        private final Function function;
+        private int evaluations;
+        private double error;
+        private boolean converged = true;
+        private int skipped;
+
+        private Run(Function function) {
+            this.function = function;
+        }
+
+        private double apply(double x) {
+            ++evaluations;
+            return function.apply(x);
+        }
+
+        private double step(double a, double b, double fa, double fm, double fb, double whole, double tolerance, int depth) {
+            double m = (a + b) / 2;
+            double flm = apply((a + m) / 2);
+            double frm = apply((m + b) / 2);
+            double left = (m - a) / 6 * (fa + 4 * flm + fm);
+            double right = (b - m) / 6 * (fm + 4 * frm + fb);
+            double delta = left + right - whole;
+            boolean finite = isFinite(left) && isFinite(right) && isFinite(whole);
+
+            if (!finite && !isFinite(fa) && !isFinite(flm) && !isFinite(fm) && !isFinite(frm) && !isFinite(fb)) {
+                ++skipped;
+                return 0;
+            } else if (finite && depth >= MIN_DEPTH && Math.abs(delta) <= 15 * tolerance) {
+                error += Math.abs(delta) / 15;
+                return left + right + delta / 15;
+            } else if (depth >= MAX_DEPTH || evaluations >= maxEvaluations) {
+                if (finite) {
+                    converged = false;
+                    error += Math.abs(delta) / 15;
+                    return left + right + delta / 15;
+                }
+                ++skipped;
+                return 0;
+            }
+
+            return step(a, m, fa, flm, fm, left, tolerance / 2, depth + 1) + step(m, b, fm, frm, fb, right, tolerance / 2, depth + 1);
+        }
+    }
+
+    static boolean isFinite(double value) {
+        return value - value == 0;
+    }
+}
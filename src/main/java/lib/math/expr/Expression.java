@@ -0,0 +1,279 @@
+package lib.math.expr;
+
+/**
+ * Immutable syntax tree of a formula in one variable.
+ */
+public abstract class Expression {
+    /**
+     * Evaluates the tree directly, with the variable set to x. Slow; compile with {@link ExpressionCompiler} to evaluate
+     * many values.
+     */
+    public abstract double evaluate(double x);
+
+    /**
+     * @return an equivalent tree with constant subtrees folded and identities such as x * 1 and x + 0 removed. The rewrites
+     * keep values exactly, except that e^x becomes exp(x), which may round differently in the last place. Constants are not
+     * collected across chains like (x + 1) + 2: regrouping changes the rounding, (x + 1e16) - 1e16 is 0 at x = 1 but x is 1.
+     */
+    public abstract Expression simplify();
+
+    public boolean isConstant(double value) {
+        return false;
+    }
+
+    /**
+     * @return the binding strength of the tree's root when printed, higher binds tighter
+     */
+    abstract int getPrecedence();
+
+    public static final class Constant extends Expression {
+        private final double value;
+
+        public Constant(double value) {
+            this.value = value;
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        @Override
+        public double evaluate(double x) {
+            return value;
+        }
+
+        @Override
+        public Expression simplify() {
+            return this;
+        }
+
+        @Override
+        public boolean isConstant(double value) {
+            return Double.compare(this.value, value) == 0;
+        }
+
+        @Override
+        int getPrecedence() {
+            return value < 0 ? 1 : 5;
+        }
+
+        /**
+         * Prints infinities and NaN as the divisions by zero that produce them, so the text can be parsed again.
+         */
+        @Override
+        public String toString() {
+            if (value != value) {
+                return "(0 / 0)";
+            } else if (Double.isInfinite(value)) {
+                return value > 0 ? "(1 / 0)" : "(-1 / 0)";
+            } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                return Long.toString((long) value);
+            }
+            return Double.toString(value);
+        }
+    }
+
+    public static final class Variable extends Expression {
+        private final String name;
+
+        public Variable(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public double evaluate(double x) {
+            return x;
+        }
+
+        @Override
+        public Expression simplify() {
+            return this;
+        }
+
+        @Override
+        int getPrecedence() {
+            return 5;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static final class Unary extends Expression {
+        private final MathFunction function;
+        private final Expression argument;
+
+        public Unary(MathFunction function, Expression argument) {
+            this.function = function;
+            this.argument = argument;
+        }
+
+        public MathFunction getFunction() {
+            return function;
+        }
+
+        public Expression getArgument() {
+            return argument;
+        }
+
+        @Override
+        public double evaluate(double x) {
+            return function.apply(argument.evaluate(x));
+        }
+
+        @Override
+        public Expression simplify() {
+            Expression argument = this.argument.simplify();
+            if (argument instanceof Constant) {
+                return new Constant(function.apply(((Constant) argument).value));
+            } else if (function == MathFunction.NEGATE && argument instanceof Unary && ((Unary) argument).function == MathFunction.NEGATE) {
+                return ((Unary) argument).argument;
+            }
+            return argument == this.argument ? this : new Unary(function, argument);
+        }
+
+        @Override
+        int getPrecedence() {
+            return function == MathFunction.NEGATE ? 2 : 5;
+        }
+
+        @Override
+        public String toString() {
+            if (function == MathFunction.NEGATE) {
+                return "-" + (argument.getPrecedence() < 3 ? "(" + argument + ")" : argument.toString());
+            }
+            return function.getName() + "(" + argument + ")";
+        }
+    }
+
+    public static final class Binary extends Expression {
+        private final Operator operator;
+        private final Expression left, right;
+
+        public Binary(Operator operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        public Expression getLeft() {
+            return left;
+        }
+
+        public Expression getRight() {
+            return right;
+        }
+
+        @Override
+        public double evaluate(double x) {
+            return operator.apply(left.evaluate(x), right.evaluate(x));
+        }
+
+        @Override
+        public Expression simplify() {
+            Expression left = this.left.simplify();
+            Expression right = this.right.simplify();
+            if (left instanceof Constant && right instanceof Constant) {
+                return new Constant(operator.apply(((Constant) left).value, ((Constant) right).value));
+            }
+            if (operator.isCommutative() && left instanceof Constant) {
+                Expression swap = left;
+                left = right;
+                right = swap;
+            }
+
+            switch (operator) {
+                case ADD:
+                    if (right.isConstant(0)) {
+                        return left;
+                    } else if (isNegation(right)) {
+                        return new Binary(Operator.SUBTRACT, left, ((Unary) right).argument).simplify();
+                    } else if (isNegation(left)) {
+                        return new Binary(Operator.SUBTRACT, right, ((Unary) left).argument).simplify();
+                    }
+                    break;
+                case SUBTRACT:
+                    if (right.isConstant(0)) {
+                        return left;
+                    } else if (left.isConstant(0)) {
+                        return new Unary(MathFunction.NEGATE, right).simplify();
+                    } else if (isNegation(right)) {
+                        return new Binary(Operator.ADD, left, ((Unary) right).argument).simplify();
+                    } else if (right instanceof Constant) {
+                        return new Binary(Operator.ADD, left, new Constant(-((Constant) right).value)).simplify();
+                    }
+                    break;
+                case MULTIPLY:
+                    if (right.isConstant(1)) {
+                        return left;
+                    } else if (right.isConstant(-1)) {
+                        return new Unary(MathFunction.NEGATE, left).simplify();
+                    } else if (isNegation(left) && isNegation(right)) {
+                        return new Binary(Operator.MULTIPLY, ((Unary) left).argument, ((Unary) right).argument).simplify();
+                    }
+                    break;
+                case DIVIDE:
+                    if (right.isConstant(1)) {
+                        return left;
+                    } else if (right instanceof Constant && isPowerOfTwo(((Constant) right).value)) {
+                        return new Binary(Operator.MULTIPLY, left, new Constant(1 / ((Constant) right).value)).simplify();
+                    }
+                    break;
+                case POWER:
+                    if (right.isConstant(1)) {
+                        return left;
+                    } else if (right.isConstant(0)) {
+                        return new Constant(1);
+                    } else if (left.isConstant(Math.E)) {
+                        return new Unary(MathFunction.EXP, right);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return left == this.left && right == this.right ? this : new Binary(operator, left, right);
+        }
+
+        private static boolean isNegation(Expression expression) {
+            return expression instanceof Unary && ((Unary) expression).function == MathFunction.NEGATE;
+        }
+
+        /**
+         * @return true if dividing by the value is exactly multiplying by its reciprocal
+         */
+        private static boolean isPowerOfTwo(double value) {
+            int exponent = Math.getExponent(value);
+            return exponent > Double.MIN_EXPONENT && exponent < Double.MAX_EXPONENT && Math.abs(value) == Math.scalb(1.0, exponent);
+        }
+
+        @Override
+        int getPrecedence() {
+            return operator.isInfix() ? operator.getPrecedence() : 5;
+        }
+
+        @Override
+        public String toString() {
+            if (!operator.isInfix()) {
+                return operator.getSymbol() + "(" + left + ", " + right + ")";
+            }
+            if (operator == Operator.ADD && right instanceof Constant && ((Constant) right).value < 0) {
+                return new Binary(Operator.SUBTRACT, left, new Constant(-((Constant) right).value)).toString();
+            }
+            int precedence = operator.getPrecedence();
+            boolean rightAssociative = operator == Operator.POWER;
+            String leftText = left.getPrecedence() < precedence || rightAssociative && left.getPrecedence() == precedence ? "(" + left + ")" : left.toString();
+            String rightText = right.getPrecedence() < precedence || !rightAssociative && right.getPrecedence() == precedence ? "(" + right + ")" : right.toString();
+            return leftText + " " + operator.getSymbol() + " " + rightText;
+        }
+    }
+}
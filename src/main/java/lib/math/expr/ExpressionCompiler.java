@@ -0,0 +1,352 @@
+package lib.math.expr;
+
+import lib.math.Function;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles expression trees into {@link Function}s. Single values are evaluated by a tree of closures, one per node,
+ * specialized on the shape of the operands: a node whose operand is the variable or a constant reads it directly instead
+ * of calling a child closure, and small integer powers become multiplications. Batches are evaluated node by node over
+ * blocks of values, so the dispatch per node is paid once per block and the arithmetic runs in plain array loops.
+ */
+public final class ExpressionCompiler {
+    private static final int BLOCK = 256;
+
+    private ExpressionCompiler() {
+    }
+
+    public static Function compile(Expression expression) {
+        List<Expression> program = new ArrayList<>();
+        int depth = flatten(expression, program, 0);
+        return new Compiled(closure(expression), program.toArray(new Expression[0]), depth);
+    }
+
+    private static Function closure(Expression expression) {
+        if (expression instanceof Expression.Constant) {
+            double value = ((Expression.Constant) expression).getValue();
+            return x -> value;
+        } else if (expression instanceof Expression.Variable) {
+            return x -> x;
+        } else if (expression instanceof Expression.Unary) {
+            return unary((Expression.Unary) expression);
+        }
+        return binary((Expression.Binary) expression);
+    }
+
+    private static Function unary(Expression.Unary unary) {
+        Expression argument = unary.getArgument();
+        Function a = closure(argument);
+        boolean direct = argument instanceof Expression.Variable;
+
+        switch (unary.getFunction()) {
+            case NEGATE:
+                return direct ? x -> -x : x -> -a.apply(x);
+            case SIN:
+                return direct ? Math::sin : x -> Math.sin(a.apply(x));
+            case COS:
+                return direct ? Math::cos : x -> Math.cos(a.apply(x));
+            case TAN:
+                return direct ? Math::tan : x -> Math.tan(a.apply(x));
+            case EXP:
+                return direct ? Math::exp : x -> Math.exp(a.apply(x));
+            case LN:
+                return direct ? Math::log : x -> Math.log(a.apply(x));
+            case SQRT:
+                return direct ? Math::sqrt : x -> Math.sqrt(a.apply(x));
+            case ABS:
+                return direct ? Math::abs : x -> Math.abs(a.apply(x));
+            default:
+                MathFunction function = unary.getFunction();
+                return x -> function.apply(a.apply(x));
+        }
+    }
+
+    private static Function binary(Expression.Binary binary) {
+        Operator operator = binary.getOperator();
+        Expression left = binary.getLeft(), right = binary.getRight();
+        if (operator.isCommutative() && left instanceof Expression.Constant) {
+            Expression swap = left;
+            left = right;
+            right = swap;
+        }
+
+        Function a = closure(left), b = closure(right);
+        boolean variable = left instanceof Expression.Variable;
+        if (right instanceof Expression.Constant) {
+            double c = ((Expression.Constant) right).getValue();
+            switch (operator) {
+                case ADD:
+                    return variable ? x -> x + c : x -> a.apply(x) + c;
+                case SUBTRACT:
+                    return variable ? x -> x - c : x -> a.apply(x) - c;
+                case MULTIPLY:
+                    return variable ? x -> x * c : x -> a.apply(x) * c;
+                case DIVIDE:
+                    return variable ? x -> x / c : x -> a.apply(x) / c;
+                case POWER:
+                    return power(a, variable, c);
+                default:
+                    return x -> operator.apply(a.apply(x), c);
+            }
+        } else if (left instanceof Expression.Constant) {
+            double c = ((Expression.Constant) left).getValue();
+            switch (operator) {
+                case SUBTRACT:
+                    return x -> c - b.apply(x);
+                case DIVIDE:
+                    return x -> c / b.apply(x);
+                case POWER:
+                    return x -> Math.pow(c, b.apply(x));
+                default:
+                    return x -> operator.apply(c, b.apply(x));
+            }
+        } else if (variable) {
+            switch (operator) {
+                case ADD:
+                    return x -> x + b.apply(x);
+                case SUBTRACT:
+                    return x -> x - b.apply(x);
+                case MULTIPLY:
+                    return x -> x * b.apply(x);
+                case DIVIDE:
+                    return x -> x / b.apply(x);
+                default:
+                    break;
+            }
+        }
+
+        switch (operator) {
+            case ADD:
+                return x -> a.apply(x) + b.apply(x);
+            case SUBTRACT:
+                return x -> a.apply(x) - b.apply(x);
+            case MULTIPLY:
+                return x -> a.apply(x) * b.apply(x);
+            case DIVIDE:
+                return x -> a.apply(x) / b.apply(x);
+            case POWER:
+                return x -> Math.pow(a.apply(x), b.apply(x));
+            default:
+                return x -> operator.apply(a.apply(x), b.apply(x));
+        }
+    }
+
+    private static Function power(Function a, boolean variable, double exponent) {
+        if (exponent == 2) {
+            return variable ? x -> x * x : x -> {
+                double value = a.apply(x);
+                return value * value;
+            };
+        } else if (exponent == 3) {
+            return variable ? x -> x * x * x : x -> {
+                double value = a.apply(x);
+                return value * value * value;
+            };
+        } else if (exponent == -1) {
+            return variable ? x -> 1 / x : x -> 1 / a.apply(x);
+        }
+        return variable ? x -> Math.pow(x, exponent) : x -> Math.pow(a.apply(x), exponent);
+    }
+
+    /**
+     * Appends the nodes of the tree in postfix order. Constant right operands are left out and read by their parent.
+     *
+     * @return the stack depth needed to evaluate the program
+     */
+    private static int flatten(Expression expression, List<Expression> program, int depth) {
+        int needed = depth + 1;
+        if (expression instanceof Expression.Unary) {
+            needed = flatten(((Expression.Unary) expression).getArgument(), program, depth);
+        } else if (expression instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) expression;
+            needed = flatten(binary.getLeft(), program, depth);
+            if (!(binary.getRight() instanceof Expression.Constant)) {
+                needed = Math.max(needed, flatten(binary.getRight(), program, depth + 1));
+            }
+        }
+        program.add(expression);
+        return needed;
+    }
+
+    private static final class Compiled implements Function {
+        private final Function closure;
+        private final Expression[] program;
+        private final int depth;
+
+        private Compiled(Function closure, Expression[] program, int depth) {
+            this.closure = closure;
+            this.program = program;
+            this.depth = depth;
+        }
+
+        @Override
+        public double apply(double x) {
+            return closure.apply(x);
+        }
+
+        @Override
+        public void applyAll(double[] xs, double[] out, int from, int to) {
+            double[][] stack = new double[depth][Math.min(BLOCK, to - from)];
+            for (int block = from; block < to; block += BLOCK) {
+                int count = Math.min(BLOCK, to - block);
+                int top = -1;
+                for (Expression node : program) {
+                    if (node instanceof Expression.Constant) {
+                        Arrays.fill(stack[++top], 0, count, ((Expression.Constant) node).getValue());
+                    } else if (node instanceof Expression.Variable) {
+                        System.arraycopy(xs, block, stack[++top], 0, count);
+                    } else if (node instanceof Expression.Unary) {
+                        unary(((Expression.Unary) node).getFunction(), stack[top], count);
+                    } else {
+                        Expression.Binary binary = (Expression.Binary) node;
+                        if (binary.getRight() instanceof Expression.Constant) {
+                            binary(binary.getOperator(), stack[top], ((Expression.Constant) binary.getRight()).getValue(), count);
+                        } else {
+                            --top;
+                            binary(binary.getOperator(), stack[top], stack[top + 1], count);
+                        }
+                    }
+                }
+                System.arraycopy(stack[0], 0, out, block, count);
+            }
+        }
+
+        private static void unary(MathFunction function, double[] values, int count) {
+            switch (function) {
+                case NEGATE:
+                    for (int i = 0; i < count; i++) {
+                        values[i] = -values[i];
+                    }
+                    break;
+                case ABS:
+                    for (int i = 0; i < count; i++) {
+                        values[i] = Math.abs(values[i]);
+                    }
+                    break;
+                case SQRT:
+                    for (int i = 0; i < count; i++) {
+                        values[i] = Math.sqrt(values[i]);
+                    }
+                    break;
+                case SIN:
+                    for (int i = 0; i < count; i++) {
+                        values[i] = Math.sin(values[i]);
+                    }
+                    break;
+                case COS:
+                    for (int i = 0; i < count; i++) {
+                        values[i] = Math.cos(values[i]);
+                    }
+                    break;
+                case EXP:
+                    for (int i = 0; i < count; i++) {
+                        values[i] = Math.exp(values[i]);
+                    }
+                    break;
+                case LN:
+                    for (int i = 0; i < count; i++) {
+                        values[i] = Math.log(values[i]);
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < count; i++) {
+                        values[i] = function.apply(values[i]);
+                    }
+                    break;
+            }
+        }
+
+        /**
+         * Combines the operands into the left array.
+         */
+        private static void binary(Operator operator, double[] left, double[] right, int count) {
+            switch (operator) {
+                case ADD:
+                    for (int i = 0; i < count; i++) {
+                        left[i] += right[i];
+                    }
+                    break;
+                case SUBTRACT:
+                    for (int i = 0; i < count; i++) {
+                        left[i] -= right[i];
+                    }
+                    break;
+                case MULTIPLY:
+                    for (int i = 0; i < count; i++) {
+                        left[i] *= right[i];
+                    }
+                    break;
+                case DIVIDE:
+                    for (int i = 0; i < count; i++) {
+                        left[i] /= right[i];
+                    }
+                    break;
+                case POWER:
+                    for (int i = 0; i < count; i++) {
+                        left[i] = Math.pow(left[i], right[i]);
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < count; i++) {
+                        left[i] = operator.apply(left[i], right[i]);
+                    }
+                    break;
+            }
+        }
+
+        /**
+         * Combines the left operands with a constant right operand.
+         */
+        private static void binary(Operator operator, double[] left, double right, int count) {
+            switch (operator) {
+                case ADD:
+                    for (int i = 0; i < count; i++) {
+                        left[i] += right;
+                    }
+                    break;
+                case SUBTRACT:
+                    for (int i = 0; i < count; i++) {
+                        left[i] -= right;
+                    }
+                    break;
+                case MULTIPLY:
+                    for (int i = 0; i < count; i++) {
+                        left[i] *= right;
+                    }
+                    break;
+                case DIVIDE:
+                    for (int i = 0; i < count; i++) {
+                        left[i] /= right;
+                    }
+                    break;
+                case POWER:
+                    if (right == 2) {
+                        for (int i = 0; i < count; i++) {
+                            left[i] *= left[i];
+                        }
+                    } else if (right == 3) {
+                        for (int i = 0; i < count; i++) {
+                            left[i] *= left[i] * left[i];
+                        }
+                    } else if (right == -1) {
+                        for (int i = 0; i < count; i++) {
+                            left[i] = 1 / left[i];
+                        }
+                    } else {
+                        for (int i = 0; i < count; i++) {
+                            left[i] = Math.pow(left[i], right);
+                        }
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < count; i++) {
+                        left[i] = operator.apply(left[i], right);
+                    }
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package lib.math.expr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recursive descent parser of formulas in one variable. Supported are numbers, the variable, named parameters, the
+ * constants pi, tau and e, the operators + - * / ^ with the usual precedence (^ binds tightest and to the right, -x^2 is
+ * -(x^2)), parentheses, the functions of {@link MathFunction} and the two-argument functions of {@link Operator}.
+ * Multiplication may be implicit, as in 2x or 3(x + 1). Syntax errors throw IllegalArgumentException.
+ */
+public class ExpressionParser {
+    private final String text;
+    private final String variable;
+    private final Map<String, Double> parameters;
+    private int position;
+
+    private ExpressionParser(String text, String variable, Map<String, Double> parameters) {
+        this.text = text;
+        this.variable = variable;
+        this.parameters = parameters;
+    }
+
+    public static Expression parse(String text, String variable) {
+        return parse(text, variable, Collections.<String, Double>emptyMap());
+    }
+
+    /**
+     * @param parameters named values substituted as constants
+     */
+    public static Expression parse(String text, String variable, Map<String, Double> parameters) {
+        ExpressionParser parser = new ExpressionParser(text, variable, parameters);
+        Expression expression = parser.parseExpression();
+        parser.skipSpaces();
+        if (parser.position < text.length()) {
+            throw parser.error("Unexpected '" + text.charAt(parser.position) + "'");
+        }
+        return expression;
+    }
+
+    private Expression parseExpression() {
+        Expression expression = parseTerm();
+        while (true) {
+            if (accept('+')) {
+                expression = new Expression.Binary(Operator.ADD, expression, parseTerm());
+            } else if (accept('-')) {
+                expression = new Expression.Binary(Operator.SUBTRACT, expression, parseTerm());
+            } else {
+                return expression;
+            }
+        }
+    }
+
+    private Expression parseTerm() {
+        Expression expression = parseUnary();
+        while (true) {
+            if (accept('*')) {
+                expression = new Expression.Binary(Operator.MULTIPLY, expression, parseUnary());
+            } else if (accept('/')) {
+                expression = new Expression.Binary(Operator.DIVIDE, expression, parseUnary());
+            } else if (startsPrimary()) {
+                expression = new Expression.Binary(Operator.MULTIPLY, expression, parsePower());
+            } else {
+                return expression;
+            }
+        }
+    }
+
+    private Expression parseUnary() {
+        if (accept('-')) {
+            return new Expression.Unary(MathFunction.NEGATE, parseUnary());
+        } else if (accept('+')) {
+            return parseUnary();
+        }
+        return parsePower();
+    }
+
+    private Expression parsePower() {
+        Expression base = parsePrimary();
+        if (accept('^')) {
+            return new Expression.Binary(Operator.POWER, base, parseUnary());
+        }
+        return base;
+    }
+
+    private Expression parsePrimary() {
+        skipSpaces();
+        if (position >= text.length()) {
+            throw error("Unexpected end of formula");
+        }
+
+        char c = text.charAt(position);
+        if (accept('(')) {
+            Expression expression = parseExpression();
+            expect(')');
+            return expression;
+        } else if (Character.isDigit(c) || c == '.') {
+            return parseNumber();
+        } else if (Character.isLetter(c) || c == '_') {
+            return parseName();
+        }
+        throw error("Unexpected '" + c + "'");
+    }
+
+    private Expression parseNumber() {
+        int start = position;
+        while (position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+            ++position;
+        }
+        if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+            int exponent = position + 1;
+            if (exponent < text.length() && (text.charAt(exponent) == '+' || text.charAt(exponent) == '-')) {
+                ++exponent;
+            }
+            if (exponent < text.length() && Character.isDigit(text.charAt(exponent))) {
+                position = exponent;
+                while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                    ++position;
+                }
+            }
+        }
+
+        try {
+            return new Expression.Constant(Double.parseDouble(text.substring(start, position)));
+        } catch (NumberFormatException exc) {
+            position = start;
+            throw error("Malformed number");
+        }
+    }
+
+    private Expression parseName() {
+        int start = position;
+        while (position < text.length() && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+            ++position;
+        }
+        String name = text.substring(start, position);
+
+        if (name.equals(variable)) {
+            return new Expression.Variable(name);
+        } else if (parameters.containsKey(name)) {
+            return new Expression.Constant(parameters.get(name));
+        }
+        switch (name) {
+            case "pi":
+                return new Expression.Constant(Math.PI);
+            case "tau":
+                return new Expression.Constant(2 * Math.PI);
+            case "e":
+                return new Expression.Constant(Math.E);
+            default:
+                break;
+        }
+
+        if (!accept('(')) {
+            position = start;
+            throw error("Unknown name '" + name + "'");
+        }
+        List<Expression> arguments = new ArrayList<>();
+        if (!accept(')')) {
+            do {
+                arguments.add(parseExpression());
+            } while (accept(','));
+            expect(')');
+        }
+
+        MathFunction function = MathFunction.byName(name);
+        Operator operator = Operator.byName(name);
+        if (function != null && arguments.size() == 1) {
+            return new Expression.Unary(function, arguments.get(0));
+        } else if (operator != null && arguments.size() == 2) {
+            return new Expression.Binary(operator, arguments.get(0), arguments.get(1));
+        }
+        position = start;
+        if (function != null || operator != null) {
+            throw error("'" + name + "' takes " + (function != null ? 1 : 2) + " arguments, got " + arguments.size());
+        }
+        throw error("Unknown function '" + name + "'");
+    }
+
+    private boolean startsPrimary() {
+        skipSpaces();
+        if (position >= text.length()) {
+            return false;
+        }
+        char c = text.charAt(position);
+        return c == '(' || c == '.' || c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private boolean accept(char c) {
+        skipSpaces();
+        if (position < text.length() && text.charAt(position) == c) {
+            ++position;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!accept(c)) {
+            throw error(position < text.length() ? "Expected '" + c + "' instead of '" + text.charAt(position) + "'" : "Expected '" + c + "'");
+        }
+    }
+
+    private void skipSpaces() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            ++position;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " of \"" + text + "\"");
+    }
+}
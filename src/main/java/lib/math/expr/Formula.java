@@ -0,0 +1,60 @@
+package lib.math.expr;
+
+import lib.math.Function;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A function given by a formula text, such as "sin(x)^2 + 0.5x". The text is parsed by {@link ExpressionParser},
+ * simplified and compiled by {@link ExpressionCompiler} once, when the formula is created. Parameters are substituted as
+ * constants and folded, so formulas with parameters driven by a slider should be recreated when a parameter changes.
+ */
+public class Formula implements Function {
+    private final String text;
+    private final Expression expression;
+    private final Function function;
+
+    public Formula(String text) {
+        this(text, "x");
+    }
+
+    public Formula(String text, String variable) {
+        this(text, variable, Collections.<String, Double>emptyMap());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text is not a valid formula
+     */
+    public Formula(String text, String variable, Map<String, Double> parameters) {
+        this.text = text;
+        this.expression = ExpressionParser.parse(text, variable, parameters).simplify();
+        this.function = ExpressionCompiler.compile(expression);
+    }
+
+    @Override
+    public double apply(double x) {
+        return function.apply(x);
+    }
+
+    @Override
+    public void applyAll(double[] xs, double[] out, int from, int to) {
+        function.applyAll(xs, out, from, to);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return the simplified expression tree
+     */
+    public Expression getExpression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package lib.math.expr;
+
+/**
+ * Functions of one argument available in formulas, and negation.
+ */
+public enum MathFunction {
+    NEGATE("-"),
+    SIN("sin"),
+    COS("cos"),
+    TAN("tan"),
+    ASIN("asin"),
+    ACOS("acos"),
+    ATAN("atan"),
+    SINH("sinh"),
+    COSH("cosh"),
+    TANH("tanh"),
+    EXP("exp"),
+    LN("ln"),
+    LOG10("log10"),
+    SQRT("sqrt"),
+    CBRT("cbrt"),
+    ABS("abs"),
+    FLOOR("floor"),
+    CEIL("ceil"),
+    /**
+     * Rounds halves up, as {@link Math#round(double)} does: round(2.5) is 3 and round(-2.5) is -2.
+     */
+    ROUND("round"),
+    SIGN("sign");
+
+    private final String name;
+
+    MathFunction(String name) {
+        this.name = name;
+    }
+
+    public double apply(double x) {
+        switch (this) {
+            case NEGATE:
+                return -x;
+            case SIN:
+                return Math.sin(x);
+            case COS:
+                return Math.cos(x);
+            case TAN:
+                return Math.tan(x);
+            case ASIN:
+                return Math.asin(x);
+            case ACOS:
+                return Math.acos(x);
+            case ATAN:
+                return Math.atan(x);
+            case SINH:
+                return Math.sinh(x);
+            case COSH:
+                return Math.cosh(x);
+            case TANH:
+                return Math.tanh(x);
+            case EXP:
+                return Math.exp(x);
+            case LN:
+                return Math.log(x);
+            case LOG10:
+                return Math.log10(x);
+            case SQRT:
+                return Math.sqrt(x);
+            case CBRT:
+                return Math.cbrt(x);
+            case ABS:
+                return Math.abs(x);
+            case FLOOR:
+                return Math.floor(x);
+            case CEIL:
+                return Math.ceil(x);
+            case ROUND:
+                return Math.abs(x) < 0x1p52 ? (double) Math.round(x) : x;
+            case SIGN:
+                return Math.signum(x);
+            default:
+                throw new IllegalStateException("Unknown function " + this);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the function with the given name, or null
+     */
+    public static MathFunction byName(String name) {
+        for (MathFunction function : values()) {
+            if (function != NEGATE && function.name.equals(name)) {
+                return function;
+            }
+        }
+        return "log".equals(name) ? LN : null;
+    }
+}
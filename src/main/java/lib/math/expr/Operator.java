@@ -0,0 +1,82 @@
+package lib.math.expr;
+
+/**
+ * Binary operators of formulas. Operators without an infix symbol are written as two-argument function calls.
+ */
+public enum Operator {
+    ADD("+", 1, true),
+    SUBTRACT("-", 1, false),
+    MULTIPLY("*", 2, true),
+    DIVIDE("/", 2, false),
+    POWER("^", 3, false),
+    MIN("min", 0, true),
+    MAX("max", 0, true),
+    ATAN2("atan2", 0, false),
+    HYPOT("hypot", 0, true);
+
+    private final String symbol;
+    private final int precedence;
+    private final boolean commutative;
+
+    Operator(String symbol, int precedence, boolean commutative) {
+        this.symbol = symbol;
+        this.precedence = precedence;
+        this.commutative = commutative;
+    }
+
+    public double apply(double left, double right) {
+        switch (this) {
+            case ADD:
+                return left + right;
+            case SUBTRACT:
+                return left - right;
+            case MULTIPLY:
+                return left * right;
+            case DIVIDE:
+                return left / right;
+            case POWER:
+                return Math.pow(left, right);
+            case MIN:
+                return Math.min(left, right);
+            case MAX:
+                return Math.max(left, right);
+            case ATAN2:
+                return Math.atan2(left, right);
+            case HYPOT:
+                return Math.hypot(left, right);
+            default:
+                throw new IllegalStateException("Unknown operator " + this);
+        }
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return the binding strength of the infix symbol, or 0 for operators written as function calls
+     */
+    public int getPrecedence() {
+        return precedence;
+    }
+
+    public boolean isCommutative() {
+        return commutative;
+    }
+
+    public boolean isInfix() {
+        return precedence > 0;
+    }
+
+    /**
+     * @return the operator written as a function call with the given name, or null
+     */
+    public static Operator byName(String name) {
+        for (Operator operator : values()) {
+            if (!operator.isInfix() && operator.symbol.equals(name)) {
+                return operator;
+            }
+        }
+        return "pow".equals(name) ? POWER : null;
+    }
+}
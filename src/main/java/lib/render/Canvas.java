@@ -1,6 +1,8 @@
 package lib.render;
 
 import lib.buffer.BufferBuilder;
+import lib.buffer.ParallelGeometry;
+import lib.buffer.RetainedGeometry;
 import lib.buffer.Tessellator;
 import lib.math.Function;
 import lib.math.RenderMaths;
@@ -11,12 +13,17 @@ import org.lwjgl.opengl.GL11;
 
 import java.util.function.Consumer;
 
-import static lib.math.RenderMaths.ONE_MIN_EPS;
-
 public class Canvas {
     protected final Tessellator tessellator;
     public final int width, height;
     public final TextRenderer font;
+    private double[] points = new double[0];
+    private double circleTolerance = 0.25;
+    private final SpriteBatch sprites = new SpriteBatch(this);
+    private final ShapeBatch shapes = new ShapeBatch(this);
+    private final FunctionSampler sampler = new FunctionSampler();
+    private final FunctionPlotter plotter = new FunctionPlotter();
+    private final GeometryCache retained = new GeometryCache(64L << 20);
 
     public Canvas(Tessellator tessellator, int width, int height, String font, int fontSize) {
         this.tessellator = tessellator;
@@ -29,6 +36,56 @@ public class Canvas {
         tessellator.draw(mode, format, builder);
     }
 
+    public void drawParallel(int mode, VertexFormat format, int count, ParallelGeometry geometry) {
+        tessellator.drawParallel(mode, format, count, geometry);
+    }
+
+    /**
+     * Records everything the painter draws into GPU-resident vertex buffers stored under the given key, then draws it. Later
+     * frames can draw the same geometry with {@link #replay(Object)} without generating its vertices again. Geometry larger
+     * than the whole cache is drawn once and deleted.
+     */
+    public void record(Object key, Consumer<Canvas> painter) {
+        tessellator.startRecording();
+        RetainedGeometry geometry;
+        try {
+            painter.accept(this);
+        } finally {
+            geometry = tessellator.stopRecording();
+        }
+        tessellator.draw(geometry);
+        if (!retained.put(key, geometry)) {
+            geometry.delete();
+        }
+    }
+
+    /**
+     * Draws geometry previously recorded under the given key.
+     *
+     * @return false if nothing is recorded under the key, either because it was never recorded, was invalidated or evicted
+     */
+    public boolean replay(Object key) {
+        RetainedGeometry geometry = retained.get(key);
+        if (geometry == null) {
+            return false;
+        }
+        tessellator.draw(geometry);
+        return true;
+    }
+
+    /**
+     * Replays the geometry recorded under the key, recording it with the painter first if it is not cached.
+     */
+    public void retain(Object key, Consumer<Canvas> painter) {
+        if (!replay(key)) {
+            record(key, painter);
+        }
+    }
+
+    public GeometryCache getRetained() {
+        return retained;
+    }
+
     public void fillCircle(int color, double x, double y, double radius) {
         fillCircleSegment(color, x, y, radius, 0, 2 * Math.PI);
     }
@@ -38,51 +95,48 @@ public class Canvas {
     }
 
     public void fillCircleSegment(int color, double x, double y, double radius, double startAngle, double endAngle) {
-        disableTexture();
-        tessellator.draw(GL11.GL_TRIANGLE_FAN, DefaultVertexFormats.POSITION_COLOR, buffer -> {
-            buffer.pos(x, y, 0).color(color).endVertex();
-            for (double angle = startAngle; angle <= endAngle; angle += Math.PI / 360) {
-                double dx = x + radius * Math.cos(angle);
-                double dy = y + radius * Math.sin(angle);
-                buffer.pos(dx, dy, 0).color(color).endVertex();
-            }
-            if (endAngle != 2 * Math.PI) {
-                buffer.pos(x, y, 0).color(color).endVertex();
-            }
-        });
+        fillOvalSegment(color, x, y, radius, radius, startAngle, endAngle);
     }
 
     public void fillOvalSegment(int color, double x, double y, double a, double b, double startAngle, double endAngle) {
         disableTexture();
+        CircleMesh mesh = CircleMesh.get(Math.max(Math.abs(a), Math.abs(b)), circleTolerance);
         tessellator.draw(GL11.GL_TRIANGLE_FAN, DefaultVertexFormats.POSITION_COLOR, buffer -> {
-            buffer.pos(x, y, 0).color(color).endVertex();
-            for (double angle = startAngle; angle <= endAngle; angle += Math.PI / 3600) {
-                double dx = x + a * Math.cos(angle);
-                double dy = y + b * Math.sin(angle);
-                buffer.pos(dx, dy, 0).color(color).endVertex();
-            }
+            buffer.vertex(x, y, 0, color);
+            mesh.arc(buffer, x, y, a, b, startAngle, endAngle, color);
             if (endAngle != 2 * Math.PI) {
-                buffer.pos(x, y, 0).color(color).endVertex();
+                buffer.vertex(x, y, 0, color);
             }
         });
     }
 
     public void drawCircleSegment(int color, double x, double y, double radius, double startAngle, double endAngle, double thickness) {
         disableTexture();
-        GL11.glLineWidth((float) thickness);
+        tessellator.setLineWidth((float) thickness);
         double start = Math.min(startAngle, endAngle);
         double end = Math.max(start, endAngle);
+        CircleMesh mesh = CircleMesh.get(Math.abs(radius), circleTolerance);
         tessellator.draw(GL11.GL_LINE_LOOP, DefaultVertexFormats.POSITION_COLOR, buffer -> {
-            for (double angle = start; angle <= end; angle += Math.PI / 3600) {
-                double dx = x + radius * Math.cos(angle);
-                double dy = y + radius * Math.sin(angle);
-                buffer.pos(dx, dy, 0).color(color).endVertex();
-            }
+            mesh.arc(buffer, x, y, radius, radius, start, end, color);
             if (endAngle != 2 * Math.PI) {
-                buffer.pos(width / 2.0, height / 2.0, 0).color(color).endVertex();
+                buffer.vertex(width / 2.0, height / 2.0, 0, color);
             }
         });
-        GL11.glLineWidth(1);
+        tessellator.setLineWidth(1);
+    }
+
+    /**
+     * Sets the maximum distance in pixels between drawn circles and ovals and the true curve. Smaller values use more segments.
+     */
+    public void setCircleTolerance(double tolerance) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("Tolerance must be positive: " + tolerance);
+        }
+        circleTolerance = tolerance;
+    }
+
+    public double getCircleTolerance() {
+        return circleTolerance;
     }
 
     public void drawTriangle(double x1, double y1, double x2, double y2, double x3, double y3, int color) {
@@ -96,19 +150,23 @@ public class Canvas {
 
     public void drawGrid(int color, double size) {
         disableTexture();
-        tessellator.draw(GL11.GL_LINES, DefaultVertexFormats.POSITION_COLOR, buffer -> {
-            //Horizontal
-            for (double y = 0; y < height; y += size) {
-                buffer.pos(0, y, 0).color(color).endVertex();
-                buffer.pos(width, y, 0).color(color).endVertex();
-            }
+        double[] points = points(((int) Math.ceil(height / size) + (int) Math.ceil(width / size) + 2) * 2);
+        int count = 0;
 
-            //Vertical
-            for (double x = 0; x < width; x += size) {
-                buffer.pos(x, 0, 0).color(color).endVertex();
-                buffer.pos(x, height, 0).color(color).endVertex();
-            }
-        });
+        //Horizontal
+        for (double y = 0; y < height; y += size) {
+            count = putPoint(points, count, 0, y);
+            count = putPoint(points, count, width, y);
+        }
+
+        //Vertical
+        for (double x = 0; x < width; x += size) {
+            count = putPoint(points, count, x, 0);
+            count = putPoint(points, count, x, height);
+        }
+
+        int vertices = count;
+        tessellator.draw(GL11.GL_LINES, DefaultVertexFormats.POSITION_COLOR, buffer -> buffer.lines(points, vertices, color));
     }
 
     public void drawAxes(int color) {
@@ -128,12 +186,12 @@ public class Canvas {
 
     public void drawLine(int color, double x1, double y1, double x2, double y2, double thickness) {
         disableTexture();
-        GL11.glLineWidth((float) thickness);
+        tessellator.setLineWidth((float) thickness);
         tessellator.draw(GL11.GL_LINES, DefaultVertexFormats.POSITION_COLOR, buffer -> {
             buffer.pos(x1, y1, 0).color(color).endVertex();
             buffer.pos(x2, y2, 0).color(color).endVertex();
         });
-        GL11.glLineWidth(1);
+        tessellator.setLineWidth(1);
     }
 
     public void drawText(int color, double x, double y, String text, boolean shadow) {
@@ -149,67 +207,148 @@ public class Canvas {
     }
 
     public void drawTexture(Texture texture, double x, double y, double width, double height, double textureWidth, double textureHeight) {
-        texture.bind();
+        bindTexture(texture);
         enableTexture();
-        tessellator.draw(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR, buffer -> {
-            buffer.pos(x, y, 0).tex(0, 0).color(255, 255, 255, 255).endVertex();
-            buffer.pos(x + width, y, 0).tex(width / textureWidth, 0).color(255, 255, 255, 255).endVertex();
-            buffer.pos(x + width, y + height, 0).tex(width / textureWidth, height / textureHeight).color(255, 255, 255, 255).endVertex();
-            buffer.pos(x, y + height, 0).tex(0, height / textureHeight).color(255, 255, 255, 255).endVertex();
-        });
+        tessellator.draw(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR, buffer -> buffer.quad(x, y, width, height, 0, 0, width / textureWidth, height / textureHeight, 0xffffffff));
     }
 
     public void drawSprite(Texture atlas, double x, double y, double width, double height, double startX, double startY, double spriteWidth, double spriteHeight) {
-        atlas.bind();
+        bindTexture(atlas);
         enableTexture();
         double uMin = startX / atlas.width;
         double uMax = (startX + spriteWidth) / atlas.width;
         double vMin = startY / atlas.height;
         double vMax = (startY + spriteHeight) / atlas.height;
-        tessellator.draw(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR, buffer -> {
-            buffer.pos(x, y, 0).tex(uMin, vMin).color(255, 255, 255, 255).endVertex();
-            buffer.pos(x + width, y, 0).tex(uMax, vMin).color(255, 255, 255, 255).endVertex();
-            buffer.pos(x + width, y + height, 0).tex(uMax, vMax).color(255, 255, 255, 255).endVertex();
-            buffer.pos(x, y + height, 0).tex(uMin, vMax).color(255, 255, 255, 255).endVertex();
-        });
+        tessellator.draw(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR, buffer -> buffer.quad(x, y, width, height, uMin, vMin, uMax, vMax, 0xffffffff));
+    }
+
+    public void drawSprite(Sprite sprite, double x, double y, double width, double height) {
+        bindTexture(sprite.texture);
+        enableTexture();
+        tessellator.draw(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR, buffer -> buffer.quad(x, y, width, height, sprite.uMin, sprite.vMin, sprite.uMax, sprite.vMax, 0xffffffff));
+    }
+
+    /**
+     * @return the sprite batch of this canvas, for drawing many sprites with few draw calls
+     */
+    public SpriteBatch getSpriteBatch() {
+        return sprites;
+    }
+
+    /**
+     * @return the instanced shape batch of this canvas, for drawing many circles, rectangles and sprites
+     */
+    public ShapeBatch getShapeBatch() {
+        return shapes;
     }
 
     public void fillFunction(int color, double grid, Function function) {
         fillFunction(color, grid, function, 0, width);
     }
 
+    /**
+     * Fills the area between the function and the horizontal axis over the pixels [start, end). The samples are cached by
+     * the canvas' {@link FunctionSampler}. The function is called on this thread only, unless parallel sampling was enabled
+     * on that sampler, in which case it must be thread safe.
+     */
     public void fillFunction(int color, double grid, Function function, double start, double end) {
         disableTexture();
-        tessellator.draw(GL11.GL_LINES, DefaultVertexFormats.POSITION_COLOR, buffer -> {
-            for (double x = start; x < end; x++) {
-                double arg = RenderMaths.clamp(2.0 * (x / width - 0.5) * ONE_MIN_EPS, -1.0, 1.0);
-                double value = RenderMaths.clamp(function.apply(arg * grid) / grid, -1.0, 1.0);
-                double y = height / 2.0 * (1.0 - value);
-                buffer.pos(x, height / 2.0, 0).color(color).endVertex();
-                buffer.pos(x, y, 0).color(color).endVertex();
-            }
-        });
+        double[] values = sampler.sample(function, grid, start, end, width);
+        int samples = FunctionSampler.getSampleCount(start, end);
+        double[] points = points(samples * 2);
+        int count = 0;
+
+        for (int i = 0; i < samples; ++i) {
+            double x = start + i;
+            double y = height / 2.0 * (1.0 - RenderMaths.clamp(values[i], -1.0, 1.0));
+            count = putPoint(points, count, x, height / 2.0);
+            count = putPoint(points, count, x, y);
+        }
+
+        int vertices = count;
+        tessellator.draw(GL11.GL_LINES, DefaultVertexFormats.POSITION_COLOR, buffer -> buffer.lines(points, vertices, color));
     }
 
+    /**
+     * Draws the function with one vertex per pixel. The samples are cached by the canvas' {@link FunctionSampler}. The
+     * function is called on this thread only, unless parallel sampling was enabled on that sampler, in which case it must
+     * be thread safe.
+     */
     public void drawFunction(int graphColor, double grid, double thickness, Function function) {
         disableTexture();
-        GL11.glLineWidth((float) thickness);
-        tessellator.draw(GL11.GL_LINE_STRIP, DefaultVertexFormats.POSITION_COLOR, buffer -> {
-            for (double x = 0; x < width; x++) {
-                double arg = 2.0 * (x / width - 0.5) * ONE_MIN_EPS;
-                double value = function.apply(arg * grid) / grid;
-                double y = height / 2.0 * (1.0 - value);
-                buffer.pos(x, y, 0).color(graphColor).endVertex();
-            }
-        });
-        GL11.glLineWidth(1);
+        tessellator.setLineWidth((float) thickness);
+        double[] values = sampler.sample(function, grid, 0, width, width);
+        double[] points = points(width);
+        int count = 0;
+
+        for (int x = 0; x < width; ++x) {
+            count = putPoint(points, count, x, height / 2.0 * (1.0 - values[x]));
+        }
+
+        int vertices = count;
+        tessellator.draw(GL11.GL_LINE_STRIP, DefaultVertexFormats.POSITION_COLOR, buffer -> buffer.lines(points, vertices, graphColor));
+        tessellator.setLineWidth(1);
+    }
+
+    /**
+     * Draws the function like {@link #drawFunction}, but sampled adaptively by the canvas' {@link FunctionPlotter}: flat
+     * parts use few vertices, bends are refined and the line is broken at NaN values and discontinuities.
+     */
+    public void plotFunction(int graphColor, double grid, double thickness, Function function) {
+        disableTexture();
+        tessellator.setLineWidth((float) thickness);
+        plotter.plot(function, grid, 0, width, width, height);
+        double[] points = plotter.getPoints();
+
+        for (int i = 0; i < plotter.getStripCount(); ++i) {
+            int first = plotter.getStripStart(i);
+            int length = plotter.getStripLength(i);
+            tessellator.draw(GL11.GL_LINE_STRIP, DefaultVertexFormats.POSITION_COLOR, buffer -> buffer.lines(points, first, length, graphColor));
+        }
+        tessellator.setLineWidth(1);
+    }
+
+    public FunctionPlotter getFunctionPlotter() {
+        return plotter;
+    }
+
+    /**
+     * @return the sampler whose cache backs {@link #drawFunction} and {@link #fillFunction}; functions whose values change
+     * over time must be invalidated in it whenever they do
+     */
+    public FunctionSampler getFunctionSampler() {
+        return sampler;
+    }
+
+    /**
+     * Returns a reusable array with room for the given number of x/y points.
+     */
+    private double[] points(int count) {
+        if (points.length < count * 2) {
+            points = new double[count * 2];
+        }
+        return points;
+    }
+
+    private static int putPoint(double[] points, int count, double x, double y) {
+        points[count * 2] = x;
+        points[count * 2 + 1] = y;
+        return count + 1;
+    }
+
+    public void bindTexture(Texture texture) {
+        tessellator.bindTexture(texture.getId());
     }
 
     public void disableTexture() {
-        GL11.glDisable(GL11.GL_TEXTURE_2D);
+        tessellator.setTextureEnabled(false);
     }
 
     public void enableTexture() {
-        GL11.glEnable(GL11.GL_TEXTURE_2D);
+        tessellator.setTextureEnabled(true);
+    }
+
+    public Tessellator getTessellator() {
+        return tessellator;
     }
 }
@@ -0,0 +1,104 @@
+package lib.render;
+
+import lib.buffer.BufferBuilder;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed unit circle with a fixed number of segments. Arcs and ellipses are emitted by scaling, rotating and translating
+ * the cached cos/sin table instead of calling Math.cos and Math.sin per vertex.
+ */
+public final class CircleMesh {
+    public static final int MIN_SEGMENTS = 8;
+    public static final int MAX_SEGMENTS = 8192;
+    private static final int STEP = 8;
+    private static final ConcurrentHashMap<Integer, CircleMesh> MESHES = new ConcurrentHashMap<>();
+    private final int segments;
+    private final double step;
+    private final double[] cos;
+    private final double[] sin;
+
+    private CircleMesh(int segments) {
+        this.segments = segments;
+        this.step = 2 * Math.PI / segments;
+        this.cos = new double[segments + 1];
+        this.sin = new double[segments + 1];
+
+        for (int i = 0; i < segments; ++i) {
+            this.cos[i] = Math.cos(i * this.step);
+            this.sin[i] = Math.sin(i * this.step);
+        }
+        this.cos[segments] = this.cos[0];
+        this.sin[segments] = this.sin[0];
+    }
+
+    /**
+     * Picks the segment count for a circle of the given radius, so that the distance between the polygon and the true circle
+     * stays below the tolerance. The count is rounded up to a multiple of 8, so circles of similar size share one mesh.
+     */
+    public static int getSegments(double radius, double tolerance) {
+        if (!(radius > tolerance)) {
+            return MIN_SEGMENTS;
+        }
+        double segments = Math.ceil(Math.PI / Math.acos(1 - tolerance / radius));
+        if (!(segments < MAX_SEGMENTS)) {
+            return MAX_SEGMENTS;
+        }
+        return Math.max(MIN_SEGMENTS, ((int) segments + STEP - 1) / STEP * STEP);
+    }
+
+    public static CircleMesh get(int segments) {
+        return MESHES.computeIfAbsent(segments, CircleMesh::new);
+    }
+
+    public static CircleMesh get(double radius, double tolerance) {
+        return get(getSegments(radius, tolerance));
+    }
+
+    public int getSegments() {
+        return this.segments;
+    }
+
+    /**
+     * @return the number of vertices {@link #arc} emits for the given angle range
+     */
+    public int getArcVertexCount(double startAngle, double endAngle) {
+        double span = endAngle - startAngle;
+        if (!(span >= 0)) {
+            return 0;
+        } else if (span >= 2 * Math.PI) {
+            return this.segments + 1;
+        } else {
+            return (int) Math.ceil(span / this.step) + 1;
+        }
+    }
+
+    /**
+     * Emits the outline of the ellipse with center (x, y) and semi-axes a and b from startAngle to endAngle into a
+     * POSITION_COLOR buffer. The first and last vertices lie exactly on the start and end angles; a full turn or more emits
+     * one closed circle with the last vertex equal to the first.
+     */
+    public void arc(BufferBuilder buffer, double x, double y, double a, double b, double startAngle, double endAngle, int color) {
+        int count = getArcVertexCount(startAngle, endAngle);
+        if (count == 0) {
+            return;
+        }
+        buffer.reserve(count);
+
+        double cosStart = Math.cos(startAngle);
+        double sinStart = Math.sin(startAngle);
+        int last = count - 1;
+
+        for (int i = 0; i < last; ++i) {
+            double dx = cosStart * this.cos[i] - sinStart * this.sin[i];
+            double dy = sinStart * this.cos[i] + cosStart * this.sin[i];
+            buffer.vertex(x + a * dx, y + b * dy, 0, color);
+        }
+
+        if (count == this.segments + 1) {
+            buffer.vertex(x + a * cosStart, y + b * sinStart, 0, color);
+        } else {
+            buffer.vertex(x + a * Math.cos(endAngle), y + b * Math.sin(endAngle), 0, color);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package lib.render;
+
+import lib.math.Function;
+
+import java.util.Arrays;
+
+import static lib.math.RenderMaths.ONE_MIN_EPS;
+
+/**
+ * Samples a function adaptively in screen space, using the same pixel to argument mapping as {@link Canvas#drawFunction}.
+ * Starting from a coarse grid, evaluated as one {@link Function#applyAll} batch, intervals are split while their midpoint
+ * is further than the tolerance from the chord, down to the resolution limit. The result is a set of polylines: NaN and
+ * infinite values end the current polyline instead of being connected, and so do jumps still larger than the tolerance at
+ * the resolution limit that do not shrink when halved once more, as a continuous slope would. While emitting, points that
+ * stay within the decimation distance of the line through the last kept point and its successor are merged into one
+ * segment.
+ */
+public class FunctionPlotter {
+    private static final double JUMP_SHRINK = 0.75;
+    private double tolerance = 0.5;
+    private double resolution = 1.0;
+    private double initialStep = 8.0;
+    private double decimation = 0.125;
+    private Function function;
+    private double grid, width, height;
+    private double[] initial = new double[256];
+    private double[] points = new double[512];
+    private int count;
+    private int[] strips = new int[16];
+    private int stripCount;
+    private int stripStart;
+    private double anchorX, anchorY, directionX, directionY;
+    private long evaluations;
+
+    /**
+     * Plots the function over the pixels [start, end) of a canvas of the given size. Results replace those of the previous
+     * plot and are read through {@link #getPoints()} and the strip accessors.
+     */
+    public void plot(Function function, double grid, double start, double end, int width, int height) {
+        this.function = function;
+        this.grid = grid;
+        this.width = width;
+        this.height = height;
+        count = 0;
+        stripCount = 0;
+        stripStart = 0;
+        evaluations = 0;
+
+        if (end > start) {
+            int samples = (int) Math.ceil((end - start) / initialStep) + 1;
+            sampleGrid(start, end, samples);
+            double x0 = start;
+            double y0 = initial[0];
+            emit(x0, y0);
+
+            for (int i = 1; i < samples; ++i) {
+                double x1 = Math.min(end, start + i * initialStep);
+                double y1 = initial[i];
+                refine(x0, y0, x1, y1);
+                emit(x1, y1);
+                x0 = x1;
+                y0 = y1;
+            }
+        }
+        endStrip();
+        this.function = null;
+    }
+
+    private double evaluate(double x) {
+        ++evaluations;
+        double arg = 2.0 * (x / width - 0.5) * ONE_MIN_EPS;
+        return height / 2.0 * (1.0 - function.apply(arg * grid) / grid);
+    }
+
+    /**
+     * Evaluates the initial grid in one batch into the initial array.
+     */
+    private void sampleGrid(double start, double end, int samples) {
+        if (initial.length < samples) {
+            initial = new double[Math.max(samples, initial.length * 2)];
+        }
+        for (int i = 0; i < samples; ++i) {
+            double x = Math.min(end, start + i * initialStep);
+            initial[i] = 2.0 * (x / width - 0.5) * ONE_MIN_EPS * grid;
+        }
+        function.applyAll(initial, initial, 0, samples);
+        for (int i = 0; i < samples; ++i) {
+            initial[i] = height / 2.0 * (1.0 - initial[i] / grid);
+        }
+        evaluations += samples;
+    }
+
+    private void refine(double x0, double y0, double x1, double y1) {
+        boolean finite = isFinite(y0) && isFinite(y1);
+        double minStep = 1.0 / resolution;
+
+        if (x1 - x0 <= minStep) {
+            double jump = Math.abs(y1 - y0);
+            if (finite && jump > tolerance) {
+                double ym = evaluate((x0 + x1) / 2);
+                if (!(Math.max(Math.abs(ym - y0), Math.abs(y1 - ym)) <= JUMP_SHRINK * jump)) {
+                    endStrip();
+                }
+            }
+            return;
+        }
+
+        double xm = (x0 + x1) / 2;
+        double ym = evaluate(xm);
+
+        if (finite && isFinite(ym) && Math.abs(y1 - y0) <= height && distance(xm, ym, x0, y0, x1, y1) <= tolerance) {
+            return;
+        }
+
+        refine(x0, y0, xm, ym);
+        emit(xm, ym);
+        refine(xm, ym, x1, y1);
+    }
+
+    private void emit(double x, double y) {
+        if (!isFinite(y)) {
+            endStrip();
+            return;
+        }
+
+        if (count - stripStart >= 2 && distance(x, y, anchorX, anchorY, directionX, directionY) <= decimation) {
+            points[count * 2 - 2] = x;
+            points[count * 2 - 1] = y;
+            return;
+        }
+
+        if (points.length < (count + 1) * 2) {
+            points = Arrays.copyOf(points, points.length * 2);
+        }
+        if (count > stripStart) {
+            anchorX = points[count * 2 - 2];
+            anchorY = points[count * 2 - 1];
+            directionX = x;
+            directionY = y;
+        }
+        points[count * 2] = x;
+        points[count * 2 + 1] = y;
+        ++count;
+    }
+
+    private void endStrip() {
+        if (count - stripStart >= 2) {
+            if (strips.length < (stripCount + 1) * 2) {
+                strips = Arrays.copyOf(strips, strips.length * 2);
+            }
+            strips[stripCount * 2] = stripStart;
+            strips[stripCount * 2 + 1] = count - stripStart;
+            ++stripCount;
+        } else {
+            count = stripStart;
+        }
+        stripStart = count;
+    }
+
+    private static boolean isFinite(double value) {
+        return value - value == 0;
+    }
+
+    /**
+     * Distance of the point (x, y) from the line through (x0, y0) and (x1, y1).
+     */
+    private static double distance(double x, double y, double x0, double y0, double x1, double y1) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            return Math.hypot(x - x0, y - y0);
+        }
+        return Math.abs(dx * (y - y0) - dy * (x - x0)) / length;
+    }
+
+    /**
+     * @return x and y pairs of all polylines, one after another
+     */
+    public double[] getPoints() {
+        return points;
+    }
+
+    public int getPointCount() {
+        return count;
+    }
+
+    public int getStripCount() {
+        return stripCount;
+    }
+
+    /**
+     * @return the index of the first point of the given polyline
+     */
+    public int getStripStart(int strip) {
+        return strips[strip * 2];
+    }
+
+    public int getStripLength(int strip) {
+        return strips[strip * 2 + 1];
+    }
+
+    /**
+     * @return the number of function evaluations of the last plot
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Sets the maximum distance in pixels between the plotted polyline and the sampled curve.
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Sets the finest sampling in samples per pixel. Values above 1 plot at sub-pixel quality, for zoomed views.
+     */
+    public void setResolution(double resolution) {
+        this.resolution = resolution;
+    }
+
+    /**
+     * Sets the spacing in pixels of the initial samples. Features narrower than this may be missed.
+     */
+    public void setInitialStep(double initialStep) {
+        this.initialStep = initialStep;
+    }
+
+    /**
+     * Sets the distance in pixels below which a point is dropped as collinear with its neighbours.
+     */
+    public void setDecimation(double decimation) {
+        this.decimation = decimation;
+    }
+}
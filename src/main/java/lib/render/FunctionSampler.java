@@ -0,0 +1,223 @@
+package lib.render;
+
+import lib.math.Function;
+import lib.math.RenderMaths;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static lib.math.RenderMaths.ONE_MIN_EPS;
+
+/**
+ * Evaluates functions once per horizontal pixel, using the same pixel to argument mapping as {@link Canvas#drawFunction},
+ * and caches the results keyed by the function instance, grid, pixel range and width. Cached samples are reused until the
+ * entry is invalidated or evicted, so functions that change over time must be invalidated when they do.
+ * <p>
+ * Functions are called from the sampling thread only. With {@link #setParallel} enabled, expensive samplings are split
+ * across the executor instead, and the sampled functions must then be safe to call from several threads. An interrupt does
+ * not cut a parallel sampling short: every chunk is still awaited, and the interrupt status is restored afterwards.
+ */
+public class FunctionSampler {
+    private static final int PROBE = 16;
+    private final Map<Key, double[]> cache;
+    private ForkJoinPool executor = ForkJoinPool.commonPool();
+    private int maxEntries = 32;
+    private long parallelThreshold = 200_000L;
+    private boolean parallel;
+    private long evaluations, hits, misses;
+
+    public FunctionSampler() {
+        cache = new LinkedHashMap<Key, double[]>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the number of pixels in [start, end), stepping by one from start
+     */
+    public static int getSampleCount(double start, double end) {
+        return end > start ? (int) Math.ceil(end - start) : 0;
+    }
+
+    /**
+     * Returns function(arg * grid) / grid for the pixels x = start, start + 1, ... below end, where arg maps [0, width) onto
+     * [-1, 1). The returned array is shared with the cache and must not be modified.
+     */
+    public double[] sample(Function function, double grid, double start, double end, int width) {
+        Key key = new Key(function, grid, start, end, width);
+        double[] values = cache.get(key);
+        if (values != null) {
+            ++hits;
+            return values;
+        }
+
+        ++misses;
+        values = new double[getSampleCount(start, end)];
+        evaluate(function, grid, start, width, values);
+        cache.put(key, values);
+        return values;
+    }
+
+    private void evaluate(Function function, double grid, double start, int width, double[] values) {
+        int count = values.length;
+        int probe = Math.min(PROBE, count);
+        long time = System.nanoTime();
+        evaluate(function, grid, start, width, values, 0, probe);
+        time = System.nanoTime() - time;
+
+        if (!parallel || count == probe || time / probe * (count - probe) < parallelThreshold) {
+            evaluate(function, grid, start, width, values, probe, count);
+            return;
+        }
+
+        int chunks = Math.min(count - probe, executor.getParallelism() * 4);
+        int chunkSize = (count - probe + chunks - 1) / chunks;
+        List<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for (int from = probe; from < count; from += chunkSize) {
+            int first = from;
+            int last = Math.min(count, from + chunkSize);
+            tasks.add(() -> {
+                evaluate(function, grid, start, width, values, first, last);
+                return null;
+            });
+        }
+
+        List<Future<Void>> futures = new ArrayList<>(tasks.size());
+        for (Callable<Void> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+
+        boolean interrupted = false;
+        try {
+            for (Future<Void> future : futures) {
+                while (true) {
+                    try {
+                        future.get();
+                        break;
+                    } catch (InterruptedException exc) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } catch (ExecutionException exc) {
+            throw new RuntimeException("Parallel function sampling failed", exc.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void evaluate(Function function, double grid, double start, int width, double[] values, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            double arg = RenderMaths.clamp(2.0 * ((start + i) / width - 0.5) * ONE_MIN_EPS, -1.0, 1.0);
+            values[i] = arg * grid;
+        }
+        function.applyAll(values, values, from, to);
+        for (int i = from; i < to; ++i) {
+            values[i] /= grid;
+        }
+        synchronized (this) {
+            evaluations += to - from;
+        }
+    }
+
+    /**
+     * Drops all cached samples of the given function.
+     */
+    public void invalidate(Function function) {
+        Iterator<Key> keys = cache.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().function == function) {
+                keys.remove();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    public void setExecutor(ForkJoinPool executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Enables parallel evaluation of expensive samplings on the executor. Off by default; only enable it when every sampled
+     * function is thread safe.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Sets the estimated sequential evaluation time in nanoseconds above which a sampling is split across the executor.
+     */
+    public void setParallelThreshold(long nanos) {
+        this.parallelThreshold = nanos;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the total number of function evaluations
+     */
+    public synchronized long getEvaluations() {
+        return evaluations;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    private static final class Key {
+        private final Function function;
+        private final double grid, start, end;
+        private final int width;
+
+        private Key(Function function, double grid, double start, double end, int width) {
+            this.function = function;
+            this.grid = grid;
+            this.start = start;
+            this.end = end;
+            this.width = width;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            } else if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return function == key.function && Double.compare(grid, key.grid) == 0 && Double.compare(start, key.start) == 0
+                    && Double.compare(end, key.end) == 0 && width == key.width;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(function);
+            result = 31 * result + Double.hashCode(grid);
+            result = 31 * result + Double.hashCode(start);
+            result = 31 * result + Double.hashCode(end);
+            return 31 * result + width;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package lib.render;
+
+import lib.buffer.RetainedGeometry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of retained geometry, bounded by the total size of its vertex buffers. Evicted geometry has its
+ * GL buffers deleted.
+ */
+public class GeometryCache {
+    private final LinkedHashMap<Object, RetainedGeometry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private long maxBytes;
+    private long bytes;
+
+    public GeometryCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public RetainedGeometry get(Object key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Stores the geometry under the key, replacing and deleting what was stored there. Geometry larger than the whole budget
+     * is not stored and stays owned by the caller.
+     *
+     * @return false if the geometry was too large to be stored
+     */
+    public boolean put(Object key, RetainedGeometry geometry) {
+        invalidate(key);
+        if (geometry.getByteSize() > maxBytes) {
+            return false;
+        }
+        entries.put(key, geometry);
+        bytes += geometry.getByteSize();
+        trim();
+        return true;
+    }
+
+    public void invalidate(Object key) {
+        RetainedGeometry geometry = entries.remove(key);
+        if (geometry != null) {
+            bytes -= geometry.getByteSize();
+            geometry.delete();
+        }
+    }
+
+    public void invalidateAll() {
+        for (RetainedGeometry geometry : entries.values()) {
+            geometry.delete();
+        }
+        entries.clear();
+        bytes = 0;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<Object, RetainedGeometry>> iterator = entries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            RetainedGeometry geometry = iterator.next().getValue();
+            iterator.remove();
+            bytes -= geometry.getByteSize();
+            geometry.delete();
+        }
+    }
+}
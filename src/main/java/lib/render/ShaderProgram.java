@@ -0,0 +1,68 @@
+package lib.render;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+
+import static lib.gl.RenderSystem.gl;
+
+/**
+ * A linked vertex and fragment shader pair. Attribute names are bound to locations in the order they are given.
+ */
+public class ShaderProgram {
+    private final int id;
+
+    public ShaderProgram(String vertexSource, String fragmentSource, String... attributes) {
+        int vertex = compile(GL20.GL_VERTEX_SHADER, vertexSource);
+        int fragment = compile(GL20.GL_FRAGMENT_SHADER, fragmentSource);
+        id = gl().glCreateProgram();
+        gl().glAttachShader(id, vertex);
+        gl().glAttachShader(id, fragment);
+
+        for (int i = 0; i < attributes.length; ++i) {
+            gl().glBindAttribLocation(id, i, attributes[i]);
+        }
+
+        gl().glLinkProgram(id);
+        gl().glDeleteShader(vertex);
+        gl().glDeleteShader(fragment);
+
+        if (gl().glGetProgrami(id, GL20.GL_LINK_STATUS) != GL11.GL_TRUE) {
+            String log = gl().glGetProgramInfoLog(id);
+            gl().glDeleteProgram(id);
+            throw new IllegalStateException("Failed to link shader program: " + log);
+        }
+    }
+
+    private static int compile(int type, String source) {
+        int shader = gl().glCreateShader(type);
+        gl().glShaderSource(shader, source);
+        gl().glCompileShader(shader);
+
+        if (gl().glGetShaderi(shader, GL20.GL_COMPILE_STATUS) != GL11.GL_TRUE) {
+            String log = gl().glGetShaderInfoLog(shader);
+            gl().glDeleteShader(shader);
+            throw new IllegalStateException("Failed to compile shader: " + log);
+        }
+        return shader;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void bind() {
+        gl().glUseProgram(id);
+    }
+
+    public static void unbind() {
+        gl().glUseProgram(0);
+    }
+
+    public int getUniform(String name) {
+        return gl().glGetUniformLocation(id, name);
+    }
+
+    public void delete() {
+        gl().glDeleteProgram(id);
+    }
+}
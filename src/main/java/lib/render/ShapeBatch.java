@@ -0,0 +1,319 @@
+package lib.render;
+
+import lib.buffer.BufferBuilder;
+import lib.vertex.DefaultVertexFormats;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static lib.gl.RenderSystem.gl;
+
+/**
+ * Draws circles, rings, pie segments, rectangles and sprites as instances of one shared quad. Every shape is a single 52 byte
+ * record in an instance buffer, and circle edges are computed per pixel in the fragment shader, so a shape costs the same
+ * bandwidth whatever its size. Shapes are queued between {@link #begin()} and {@link #end()} and drawn with one
+ * glDrawArraysInstanced per run of shapes sharing a texture.
+ * <p>
+ * Without instancing support the shapes are drawn immediately through the {@link Canvas} instead.
+ */
+public class ShapeBatch {
+    private static final int STRIDE = 52;
+    private static final float FULL_TURN = (float) (2 * Math.PI);
+    private static final String[] ATTRIBUTES = {"corner", "center", "size", "shape", "region", "color"};
+    private static final String VERTEX_SHADER = "#version 120\n" +
+            "attribute vec2 corner;\n" +
+            "attribute vec2 center;\n" +
+            "attribute vec2 size;\n" +
+            "attribute vec4 shape;\n" +
+            "attribute vec4 region;\n" +
+            "attribute vec4 color;\n" +
+            "varying vec2 local;\n" +
+            "varying vec2 texCoord;\n" +
+            "varying vec4 tint;\n" +
+            "varying vec4 params;\n" +
+            "void main() {\n" +
+            "    local = corner;\n" +
+            "    texCoord = mix(region.xy, region.zw, corner * 0.5 + 0.5);\n" +
+            "    tint = color;\n" +
+            "    params = shape;\n" +
+            "    gl_Position = gl_ModelViewProjectionMatrix * vec4(center + corner * size, 0.0, 1.0);\n" +
+            "}\n";
+    private static final String FRAGMENT_SHADER = "#version 120\n" +
+            "uniform sampler2D atlas;\n" +
+            "uniform bool textured;\n" +
+            "varying vec2 local;\n" +
+            "varying vec2 texCoord;\n" +
+            "varying vec4 tint;\n" +
+            "varying vec4 params;\n" +
+            "const float TURN = 6.28318530718;\n" +
+            "void main() {\n" +
+            "    vec4 result = tint;\n" +
+            "    if (textured) {\n" +
+            "        result *= texture2D(atlas, texCoord);\n" +
+            "    }\n" +
+            "    if (params.w > 0.5) {\n" +
+            "        float distance = length(local);\n" +
+            "        float edge = fwidth(distance);\n" +
+            "        float alpha = 1.0 - smoothstep(1.0 - edge, 1.0, distance);\n" +
+            "        if (params.z > 0.0) {\n" +
+            "            alpha *= smoothstep(params.z - edge, params.z, distance);\n" +
+            "        }\n" +
+            "        float span = params.y - params.x;\n" +
+            "        if (span < TURN && mod(atan(local.y, local.x) - params.x, TURN) > span) {\n" +
+            "            discard;\n" +
+            "        }\n" +
+            "        result.a *= alpha;\n" +
+            "    }\n" +
+            "    if (result.a <= 0.0) {\n" +
+            "        discard;\n" +
+            "    }\n" +
+            "    gl_FragColor = result;\n" +
+            "}\n";
+    private final Canvas canvas;
+    private ShaderProgram program;
+    private int texturedUniform;
+    private int meshBuffer, instanceBuffer;
+    private ByteBuffer staging;
+    private long address;
+    private boolean drawing, instanced;
+    private int count;
+    private int texture;
+    private int instances, drawCalls, lastInstances, lastDrawCalls;
+
+    public ShapeBatch(Canvas canvas) {
+        this.canvas = canvas;
+    }
+
+    public void begin() {
+        if (drawing) {
+            throw new IllegalStateException("Already drawing!");
+        }
+        drawing = true;
+        instanced = gl().hasInstancing();
+        instances = 0;
+        drawCalls = 0;
+    }
+
+    public void end() {
+        if (!drawing) {
+            throw new IllegalStateException("Not drawing!");
+        }
+        flush();
+        drawing = false;
+        lastInstances = instances;
+        lastDrawCalls = drawCalls;
+    }
+
+    public void fillCircle(int color, double x, double y, double radius) {
+        fillOvalSegment(color, x, y, radius, radius, 0, 2 * Math.PI);
+    }
+
+    public void fillCircleSegment(int color, double x, double y, double radius, double startAngle, double endAngle) {
+        fillOvalSegment(color, x, y, radius, radius, startAngle, endAngle);
+    }
+
+    public void fillOval(int color, double x, double y, double a, double b) {
+        fillOvalSegment(color, x, y, a, b, 0, 2 * Math.PI);
+    }
+
+    public void fillOvalSegment(int color, double x, double y, double a, double b, double startAngle, double endAngle) {
+        if (!(endAngle >= startAngle)) {
+            return;
+        }
+        if (!instanced) {
+            checkDrawing();
+            canvas.fillOvalSegment(color, x, y, a, b, startAngle, endAngle);
+            return;
+        }
+        put(0, x, y, a, b, startAngle, endAngle, 0, 1, 0, 0, 0, 0, color);
+    }
+
+    /**
+     * Queues a circle outline of the given thickness, centered on the radius like {@link Canvas#drawCircle}.
+     */
+    public void drawCircle(int color, double x, double y, double radius, double thickness) {
+        if (!instanced) {
+            checkDrawing();
+            canvas.drawCircle(color, x, y, radius, thickness);
+            return;
+        }
+        double outer = radius + thickness / 2;
+        double inner = Math.max(0, radius - thickness / 2) / outer;
+        put(0, x, y, outer, outer, 0, 2 * Math.PI, inner, 1, 0, 0, 0, 0, color);
+    }
+
+    public void fillRect(int color, double x, double y, double width, double height) {
+        if (!instanced) {
+            checkDrawing();
+            canvas.disableTexture();
+            canvas.draw(GL11.GL_QUADS, DefaultVertexFormats.POSITION_COLOR, buffer -> buffer.quad(x, y, width, height, color));
+            return;
+        }
+        put(0, x + width / 2, y + height / 2, width / 2, height / 2, 0, 0, 0, 0, 0, 0, 0, 0, color);
+    }
+
+    public void drawSprite(Sprite sprite, double x, double y, double width, double height) {
+        drawSprite(sprite, x, y, width, height, 0xffffffff);
+    }
+
+    public void drawSprite(Sprite sprite, double x, double y, double width, double height, int color) {
+        if (!instanced) {
+            checkDrawing();
+            canvas.bindTexture(sprite.texture);
+            canvas.enableTexture();
+            canvas.draw(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR, buffer -> buffer.quad(x, y, width, height, sprite.uMin, sprite.vMin, sprite.uMax, sprite.vMax, color));
+            return;
+        }
+        put(sprite.texture.getId(), x + width / 2, y + height / 2, width / 2, height / 2, 0, 0, 0, 0,
+                sprite.uMin, sprite.vMin, sprite.uMax, sprite.vMax, color);
+    }
+
+    private void checkDrawing() {
+        if (!drawing) {
+            throw new IllegalStateException("Not drawing!");
+        }
+    }
+
+    private void put(int texture, double x, double y, double width, double height, double startAngle, double endAngle,
+                     double inner, int kind, float uMin, float vMin, float uMax, float vMax, int color) {
+        checkDrawing();
+        if (texture != this.texture) {
+            flush();
+            this.texture = texture;
+        }
+        reserve(count + 1);
+
+        long pointer = address + (long) count * STRIDE;
+        MemoryUtil.memPutFloat(pointer, (float) x);
+        MemoryUtil.memPutFloat(pointer + 4, (float) y);
+        MemoryUtil.memPutFloat(pointer + 8, (float) width);
+        MemoryUtil.memPutFloat(pointer + 12, (float) height);
+        if (endAngle - startAngle >= 2 * Math.PI) {
+            MemoryUtil.memPutFloat(pointer + 16, 0);
+            MemoryUtil.memPutFloat(pointer + 20, FULL_TURN * 2);
+        } else {
+            MemoryUtil.memPutFloat(pointer + 16, (float) startAngle);
+            MemoryUtil.memPutFloat(pointer + 20, (float) endAngle);
+        }
+        MemoryUtil.memPutFloat(pointer + 24, (float) inner);
+        MemoryUtil.memPutFloat(pointer + 28, kind);
+        MemoryUtil.memPutFloat(pointer + 32, uMin);
+        MemoryUtil.memPutFloat(pointer + 36, vMin);
+        MemoryUtil.memPutFloat(pointer + 40, uMax);
+        MemoryUtil.memPutFloat(pointer + 44, vMax);
+        MemoryUtil.memPutInt(pointer + 48, BufferBuilder.packColor(color));
+        ++count;
+    }
+
+    private void reserve(int instances) {
+        if (staging == null || staging.capacity() < instances * STRIDE) {
+            int capacity = Math.max(1024, staging == null ? 0 : staging.capacity() / STRIDE * 2);
+            ByteBuffer grown = MemoryUtil.memAlloc(Math.max(capacity, instances) * STRIDE);
+            if (staging != null) {
+                MemoryUtil.memCopy(address, MemoryUtil.memAddress(grown), (long) count * STRIDE);
+                MemoryUtil.memFree(staging);
+            }
+            staging = grown;
+            address = MemoryUtil.memAddress(grown);
+        }
+    }
+
+    private void setup() {
+        program = new ShaderProgram(VERTEX_SHADER, FRAGMENT_SHADER, ATTRIBUTES);
+        program.bind();
+        gl().glUniform1i(program.getUniform("atlas"), 0);
+        texturedUniform = program.getUniform("textured");
+
+        ByteBuffer corners = MemoryUtil.memAlloc(32);
+        corners.putFloat(-1).putFloat(-1).putFloat(1).putFloat(-1).putFloat(-1).putFloat(1).putFloat(1).putFloat(1).flip();
+        meshBuffer = gl().glGenBuffers();
+        gl().glBindBuffer(GL15.GL_ARRAY_BUFFER, meshBuffer);
+        gl().glBufferData(GL15.GL_ARRAY_BUFFER, corners, GL15.GL_STATIC_DRAW);
+        MemoryUtil.memFree(corners);
+        instanceBuffer = gl().glGenBuffers();
+    }
+
+    /**
+     * Draws the queued shapes. Anything pending in the tessellator is drawn first, so shapes appear on top of it.
+     */
+    public void flush() {
+        if (count == 0) {
+            return;
+        }
+        canvas.getTessellator().flush();
+        if (program == null) {
+            setup();
+        }
+
+        program.bind();
+        gl().glUniform1i(texturedUniform, texture != 0 ? 1 : 0);
+        if (texture != 0) {
+            gl().glBindTexture(GL11.GL_TEXTURE_2D, texture);
+        }
+        gl().glEnable(GL11.GL_BLEND);
+        gl().glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+
+        gl().glBindBuffer(GL15.GL_ARRAY_BUFFER, meshBuffer);
+        gl().glEnableVertexAttribArray(0);
+        gl().glVertexAttribPointer(0, 2, GL11.GL_FLOAT, false, 8, 0L);
+
+        staging.position(0).limit(count * STRIDE);
+        gl().glBindBuffer(GL15.GL_ARRAY_BUFFER, instanceBuffer);
+        gl().glBufferData(GL15.GL_ARRAY_BUFFER, staging, GL15.GL_STREAM_DRAW);
+        staging.clear();
+        instanceAttribute(1, 2, GL11.GL_FLOAT, false, 0);
+        instanceAttribute(2, 2, GL11.GL_FLOAT, false, 8);
+        instanceAttribute(3, 4, GL11.GL_FLOAT, false, 16);
+        instanceAttribute(4, 4, GL11.GL_FLOAT, false, 32);
+        instanceAttribute(5, 4, GL11.GL_UNSIGNED_BYTE, true, 48);
+
+        gl().glDrawArraysInstanced(GL11.GL_TRIANGLE_STRIP, 0, 4, count);
+
+        for (int i = 1; i < ATTRIBUTES.length; ++i) {
+            gl().glVertexAttribDivisor(i, 0);
+            gl().glDisableVertexAttribArray(i);
+        }
+        gl().glDisableVertexAttribArray(0);
+        gl().glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        ShaderProgram.unbind();
+
+        instances += count;
+        ++drawCalls;
+        count = 0;
+    }
+
+    private static void instanceAttribute(int index, int size, int type, boolean normalized, long offset) {
+        gl().glEnableVertexAttribArray(index);
+        gl().glVertexAttribPointer(index, size, type, normalized, STRIDE, offset);
+        gl().glVertexAttribDivisor(index, 1);
+    }
+
+    /**
+     * @return the number of shapes drawn as instances between the last {@link #begin()} and {@link #end()}
+     */
+    public int getInstances() {
+        return lastInstances;
+    }
+
+    /**
+     * @return the number of instanced draw calls between the last {@link #begin()} and {@link #end()}
+     */
+    public int getDrawCalls() {
+        return lastDrawCalls;
+    }
+
+    public void delete() {
+        if (program != null) {
+            program.delete();
+            gl().glDeleteBuffers(meshBuffer);
+            gl().glDeleteBuffers(instanceBuffer);
+            program = null;
+        }
+        if (staging != null) {
+            MemoryUtil.memFree(staging);
+            staging = null;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package lib.render;
+
+/**
+ * A rectangular region of a texture atlas with its texture coordinates computed once.
+ */
+public class Sprite {
+    public final Texture texture;
+    public final double width, height;
+    public final float uMin, vMin, uMax, vMax;
+
+    public Sprite(Texture texture) {
+        this(texture, 0, 0, texture.width, texture.height);
+    }
+
+    public Sprite(Texture texture, double x, double y, double width, double height) {
+        this.texture = texture;
+        this.width = width;
+        this.height = height;
+        this.uMin = (float) (x / texture.width);
+        this.vMin = (float) (y / texture.height);
+        this.uMax = (float) ((x + width) / texture.width);
+        this.vMax = (float) ((y + height) / texture.height);
+    }
+}
@@ -0,0 +1,233 @@
+package lib.render;
+
+import lib.buffer.BufferBuilder;
+import lib.buffer.Tessellator;
+import lib.vertex.DefaultVertexFormats;
+import org.lwjgl.opengl.GL11;
+
+import java.util.Arrays;
+
+/**
+ * Queues sprites between {@link #begin()} and {@link #end()} and draws them grouped by texture, one tessellator draw per
+ * group. Sprites are stored in flat arrays, so queuing one does not allocate.
+ */
+public class SpriteBatch {
+    private static final int FIELDS = 10;
+    private final Canvas canvas;
+    private SortMode sortMode = SortMode.TEXTURE;
+    private boolean drawing;
+    private int count;
+    private float[] data = new float[FIELDS * 256];
+    private int[] colors = new int[256];
+    private Texture[] textures = new Texture[256];
+    private long[] keys = new long[256];
+    private int sprites, drawCalls;
+
+    public SpriteBatch(Canvas canvas) {
+        this.canvas = canvas;
+    }
+
+    public void begin() {
+        if (drawing) {
+            throw new IllegalStateException("Already drawing!");
+        }
+        drawing = true;
+        count = 0;
+    }
+
+    public void draw(Sprite sprite, double x, double y) {
+        draw(sprite, x, y, sprite.width, sprite.height, 0, 0xffffffff, 0);
+    }
+
+    public void draw(Sprite sprite, double x, double y, double width, double height) {
+        draw(sprite, x, y, width, height, 0, 0xffffffff, 0);
+    }
+
+    public void draw(Sprite sprite, double x, double y, double width, double height, int color) {
+        draw(sprite, x, y, width, height, 0, color, 0);
+    }
+
+    /**
+     * Queues a sprite.
+     *
+     * @param rotation clockwise rotation around the center of the sprite in radians
+     * @param color    ARGB tint, where an alpha of 0 is treated as opaque
+     * @param depth    sort key for {@link SortMode#DEPTH}; sprites with a smaller depth are drawn first
+     */
+    public void draw(Sprite sprite, double x, double y, double width, double height, double rotation, int color, double depth) {
+        put(sprite.texture, x, y, width, height, sprite.uMin, sprite.vMin, sprite.uMax, sprite.vMax, rotation, color, depth);
+    }
+
+    /**
+     * Queues the region (startX, startY, spriteWidth, spriteHeight) of the atlas, like {@link Canvas#drawSprite}.
+     */
+    public void draw(Texture atlas, double x, double y, double width, double height, double startX, double startY, double spriteWidth, double spriteHeight) {
+        put(atlas, x, y, width, height, (float) (startX / atlas.width), (float) (startY / atlas.height),
+                (float) ((startX + spriteWidth) / atlas.width), (float) ((startY + spriteHeight) / atlas.height), 0, 0xffffffff, 0);
+    }
+
+    private void put(Texture texture, double x, double y, double width, double height, float uMin, float vMin, float uMax, float vMax, double rotation, int color, double depth) {
+        if (!drawing) {
+            throw new IllegalStateException("Not drawing!");
+        }
+        if (count == colors.length) {
+            int capacity = count * 2;
+            data = Arrays.copyOf(data, capacity * FIELDS);
+            colors = Arrays.copyOf(colors, capacity);
+            textures = Arrays.copyOf(textures, capacity);
+            keys = new long[capacity];
+        }
+
+        int i = count * FIELDS;
+        data[i] = (float) x;
+        data[i + 1] = (float) y;
+        data[i + 2] = (float) width;
+        data[i + 3] = (float) height;
+        data[i + 4] = uMin;
+        data[i + 5] = vMin;
+        data[i + 6] = uMax;
+        data[i + 7] = vMax;
+        data[i + 8] = (float) rotation;
+        data[i + 9] = (float) depth;
+        colors[count] = color;
+        textures[count] = texture;
+        ++count;
+    }
+
+    /**
+     * Draws all queued sprites in the order of the current {@link SortMode}. Consecutive sprites sharing a texture are
+     * drawn together.
+     */
+    public void end() {
+        if (!drawing) {
+            throw new IllegalStateException("Not drawing!");
+        }
+        drawing = false;
+        sprites = count;
+        drawCalls = 0;
+        if (count == 0) {
+            return;
+        }
+
+        sort();
+        Tessellator tessellator = canvas.getTessellator();
+        canvas.enableTexture();
+
+        for (int start = 0; start < count; ) {
+            Texture texture = textures[index(start)];
+            int end = start + 1;
+            while (end < count && textures[index(end)] == texture) {
+                ++end;
+            }
+
+            canvas.bindTexture(texture);
+            BufferBuilder buffer = tessellator.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR);
+            buffer.reserve((end - start) * 4);
+            for (int i = start; i < end; ++i) {
+                write(buffer, index(i));
+            }
+            tessellator.draw();
+            ++drawCalls;
+            start = end;
+        }
+
+        Arrays.fill(textures, 0, count, null);
+        count = 0;
+    }
+
+    private void sort() {
+        for (int i = 0; i < count; ++i) {
+            long key;
+            switch (sortMode) {
+                case TEXTURE:
+                    key = (long) textures[i].getId() << 32;
+                    break;
+                case DEPTH:
+                    int bits = Float.floatToIntBits(data[i * FIELDS + 9]);
+                    key = (long) (bits ^ (bits >> 31 & 0x7fffffff)) << 32;
+                    break;
+                default:
+                    key = 0;
+                    break;
+            }
+            keys[i] = key | i;
+        }
+        if (sortMode != SortMode.SUBMISSION) {
+            Arrays.sort(keys, 0, count);
+        }
+    }
+
+    private int index(int position) {
+        return (int) keys[position];
+    }
+
+    private void write(BufferBuilder buffer, int sprite) {
+        int i = sprite * FIELDS;
+        float x = data[i], y = data[i + 1], width = data[i + 2], height = data[i + 3];
+        float uMin = data[i + 4], vMin = data[i + 5], uMax = data[i + 6], vMax = data[i + 7];
+        float rotation = data[i + 8];
+        int color = colors[sprite];
+
+        if (rotation == 0) {
+            buffer.quad(x, y, width, height, uMin, vMin, uMax, vMax, color);
+            return;
+        }
+
+        double cos = Math.cos(rotation), sin = Math.sin(rotation);
+        double centerX = x + width / 2.0, centerY = y + height / 2.0;
+        double ax = width / 2.0 * cos, ay = width / 2.0 * sin;
+        double bx = -height / 2.0 * sin, by = height / 2.0 * cos;
+        buffer.vertex(centerX - ax - bx, centerY - ay - by, 0, uMin, vMin, color);
+        buffer.vertex(centerX + ax - bx, centerY + ay - by, 0, uMax, vMin, color);
+        buffer.vertex(centerX + ax + bx, centerY + ay + by, 0, uMax, vMax, color);
+        buffer.vertex(centerX - ax + bx, centerY - ay + by, 0, uMin, vMax, color);
+    }
+
+    public void setSortMode(SortMode sortMode) {
+        if (drawing) {
+            throw new IllegalStateException("Can't change the sort mode while drawing!");
+        }
+        this.sortMode = sortMode;
+    }
+
+    public SortMode getSortMode() {
+        return sortMode;
+    }
+
+    public boolean isDrawing() {
+        return drawing;
+    }
+
+    /**
+     * @return the number of sprites drawn by the last {@link #end()}
+     */
+    public int getSprites() {
+        return sprites;
+    }
+
+    /**
+     * @return the number of texture groups, each submitted as one draw, of the last {@link #end()}
+     */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    public double getSpritesPerDrawCall() {
+        return drawCalls == 0 ? 0 : (double) sprites / drawCalls;
+    }
+
+    public enum SortMode {
+        /**
+         * Keeps the order sprites were queued in; only neighbouring sprites with the same texture share a draw.
+         */
+        SUBMISSION,
+        /**
+         * Groups sprites by texture, keeping the queue order within each texture.
+         */
+        TEXTURE,
+        /**
+         * Draws sprites by ascending depth, keeping the queue order for equal depths.
+         */
+        DEPTH
+    }
+}
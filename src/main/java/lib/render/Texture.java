@@ -14,13 +14,14 @@ import java.nio.IntBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
+import static lib.gl.RenderSystem.gl;
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL12.GL_BGRA;
 import static org.lwjgl.opengl.GL12.GL_UNSIGNED_INT_8_8_8_8_REV;
 import static org.lwjgl.opengl.GL13.GL_CLAMP_TO_BORDER;
 
 public class Texture {
-    private final int id = GL11.glGenTextures();
+    private final int id = gl().glGenTextures();
     public final int width, height;
 
     public Texture(int width, int height) {
@@ -28,12 +29,16 @@ public class Texture {
         this.height = height;
     }
 
+    public int getId() {
+        return id;
+    }
+
     public void bind() {
-        glBindTexture(GL_TEXTURE_2D, id);
+        gl().glBindTexture(GL_TEXTURE_2D, id);
     }
 
     public void setParameter(int name, int value) {
-        glTexParameteri(GL_TEXTURE_2D, name, value);
+        gl().glTexParameteri(GL_TEXTURE_2D, name, value);
     }
 
     public void upload(int width, int height, ByteBuffer data) {
@@ -41,7 +46,14 @@ public class Texture {
     }
 
     public void upload(int internalFormat, int width, int height, int format, ByteBuffer data) {
-        glTexImage2D(GL_TEXTURE_2D, 0, internalFormat, width, height, 0, format, GL11.GL_UNSIGNED_BYTE, data);
+        gl().glTexImage2D(GL_TEXTURE_2D, 0, internalFormat, width, height, 0, format, GL11.GL_UNSIGNED_BYTE, data);
+    }
+
+    /**
+     * Replaces the given rectangle of the bound texture with tightly packed RGBA pixels.
+     */
+    public void uploadRegion(int x, int y, int width, int height, ByteBuffer data) {
+        gl().glTexSubImage2D(GL_TEXTURE_2D, 0, x, y, width, height, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, data);
     }
 
     public void save(Path path) {
@@ -50,13 +62,13 @@ public class Texture {
     }
 
     public static void save(Path path, int width, int height) {
-        glPixelStorei(GL_PACK_ALIGNMENT, 1);
-        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        gl().glPixelStorei(GL_PACK_ALIGNMENT, 1);
+        gl().glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
 
         int size = width * height;
         IntBuffer output = BufferUtils.createIntBuffer(size);
         int[] data = new int[size];
-        glGetTexImage(GL_TEXTURE_2D, 0, GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, output);
+        gl().glGetTexImage(GL_TEXTURE_2D, 0, GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, output);
         output.get(data);
         BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         img.setRGB(0, 0, width, height, data, 0, width);
@@ -71,7 +83,7 @@ public class Texture {
 
     @Override
     protected void finalize() {
-        glDeleteTextures(id);
+        gl().glDeleteTextures(id);
     }
 
     public static Texture create(int width, int height, ByteBuffer data) {
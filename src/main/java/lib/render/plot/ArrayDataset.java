@@ -0,0 +1,26 @@
+package lib.render.plot;
+
+/**
+ * A dataset backed by a double array, which is not copied.
+ */
+public class ArrayDataset implements Dataset {
+    private final double[] samples;
+
+    public ArrayDataset(double[] samples) {
+        this.samples = samples;
+    }
+
+    @Override
+    public long size() {
+        return samples.length;
+    }
+
+    @Override
+    public double get(long index) {
+        return samples[(int) index];
+    }
+
+    public double[] getSamples() {
+        return samples;
+    }
+}
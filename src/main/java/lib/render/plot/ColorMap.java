@@ -0,0 +1,40 @@
+package lib.render.plot;
+
+/**
+ * Maps values in [0, 1] to ARGB colors. Values outside the range are clamped.
+ */
+public interface ColorMap {
+    ColorMap GRAYSCALE = gradient(0xff000000, 0xffffffff);
+    ColorMap HEAT = gradient(0xff000000, 0xff800000, 0xffff0000, 0xffffff00, 0xffffffff);
+    ColorMap VIRIDIS = gradient(0xff440154, 0xff3b528b, 0xff21918c, 0xff5ec962, 0xfffde725);
+    ColorMap DIVERGING = gradient(0xff3b4cc0, 0xffdddddd, 0xffb40426);
+
+    int getColor(double value);
+
+    /**
+     * Interpolates linearly between evenly spaced colors, through a 256 entry lookup table.
+     */
+    static ColorMap gradient(int... colors) {
+        int[] table = new int[256];
+        for (int i = 0; i < table.length; ++i) {
+            double position = i / 255.0 * (colors.length - 1);
+            int index = Math.min(colors.length - 2, (int) position);
+            double t = position - index;
+            int from = colors[index], to = colors[index + 1];
+            int color = 0;
+            for (int shift = 0; shift < 32; shift += 8) {
+                int a = from >>> shift & 255, b = to >>> shift & 255;
+                color |= (int) Math.round(a + (b - a) * t) << shift;
+            }
+            table[i] = color;
+        }
+        return value -> table[value >= 1 ? 255 : value > 0 ? (int) (value * 256) : 0];
+    }
+
+    /**
+     * Quantizes the map into the given number of flat bands, which makes level sets visible as contour lines.
+     */
+    static ColorMap banded(ColorMap map, int bands) {
+        return value -> map.getColor((Math.floor(Math.min(Math.max(value, 0), 1 - 1e-9) * bands) + 0.5) / bands);
+    }
+}
@@ -0,0 +1,10 @@
+package lib.render.plot;
+
+/**
+ * A read-only sequence of samples, indexed from 0.
+ */
+public interface Dataset {
+    long size();
+
+    double get(long index);
+}
@@ -0,0 +1,134 @@
+package lib.render.plot;
+
+import lib.render.Canvas;
+import lib.vertex.DefaultVertexFormats;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Draws a range of a dataset across the width of a canvas. Once a pixel column holds more than two samples, each column is
+ * drawn from the {@link MinMaxPyramid} as its min/max envelope or its mean, so a frame costs at most two vertices per
+ * column and time proportional to the width, however many samples are in view.
+ */
+public class DatasetPlot {
+    private final MinMaxPyramid pyramid;
+    private Mode mode = Mode.ENVELOPE;
+    private double[] columnMin = new double[0], columnMax, columnMean;
+    private double[] points = new double[0];
+    private int vertices;
+
+    public DatasetPlot(Dataset dataset) {
+        this(new MinMaxPyramid(dataset));
+    }
+
+    public DatasetPlot(MinMaxPyramid pyramid) {
+        this.pyramid = pyramid;
+    }
+
+    /**
+     * Draws the samples [from, to) with value minValue at the bottom of the canvas and maxValue at the top.
+     */
+    public void draw(Canvas canvas, int color, double thickness, long from, long to, double minValue, double maxValue) {
+        from = Math.max(0, from);
+        to = Math.min(pyramid.size(), to);
+        if (to <= from) {
+            vertices = 0;
+            return;
+        }
+
+        int columns = canvas.width;
+        double scale = canvas.height / (maxValue - minValue);
+        double samplesPerColumn = (double) (to - from) / columns;
+        int count = 0;
+
+        if (samplesPerColumn <= 2) {
+            Dataset dataset = pyramid.getDataset();
+            int samples = (int) (to - from);
+            ensurePoints(samples);
+            double step = columns / (double) samples;
+            for (int i = 0; i < samples; ++i) {
+                count = put(count, i * step, canvas.height - (dataset.get(from + i) - minValue) * scale);
+            }
+        } else {
+            ensureColumns(columns);
+            pyramid.query(from, to, columns, columnMin, columnMax, mode == Mode.MEAN ? columnMean : null);
+            ensurePoints(columns * 2);
+            double last = Double.NaN;
+
+            for (int x = 0; x < columns; ++x) {
+                if (mode == Mode.MEAN) {
+                    count = put(count, x, canvas.height - (columnMean[x] - minValue) * scale);
+                    continue;
+                }
+                double low = canvas.height - (columnMin[x] - minValue) * scale;
+                double high = canvas.height - (columnMax[x] - minValue) * scale;
+                if (Math.abs(high - last) < Math.abs(low - last)) {
+                    count = put(count, x, high);
+                    count = put(count, x, low);
+                    last = low;
+                } else {
+                    count = put(count, x, low);
+                    count = put(count, x, high);
+                    last = high;
+                }
+            }
+        }
+
+        vertices = count;
+        int total = count;
+        double[] xy = points;
+        canvas.disableTexture();
+        canvas.getTessellator().setLineWidth((float) thickness);
+        canvas.draw(GL11.GL_LINE_STRIP, DefaultVertexFormats.POSITION_COLOR, buffer -> buffer.lines(xy, total, color));
+        canvas.getTessellator().setLineWidth(1);
+    }
+
+    private int put(int count, double x, double y) {
+        points[count * 2] = x;
+        points[count * 2 + 1] = y;
+        return count + 1;
+    }
+
+    private void ensurePoints(int count) {
+        if (points.length < count * 2) {
+            points = new double[count * 2];
+        }
+    }
+
+    private void ensureColumns(int columns) {
+        if (columnMin.length < columns) {
+            columnMin = new double[columns];
+            columnMax = new double[columns];
+            columnMean = new double[columns];
+        }
+    }
+
+    public MinMaxPyramid getPyramid() {
+        return pyramid;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the number of vertices emitted by the last draw
+     */
+    public int getVertices() {
+        return vertices;
+    }
+
+    public enum Mode {
+        /**
+         * Draws a vertical line from the minimum to the maximum of every column, joined into one strip.
+         */
+        ENVELOPE,
+        /**
+         * Draws the mean of every column as a polyline.
+         */
+        MEAN
+    }
+}
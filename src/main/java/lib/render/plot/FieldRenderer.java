@@ -0,0 +1,280 @@
+package lib.render.plot;
+
+import lib.buffer.BufferBuilder;
+import lib.math.Field;
+import lib.render.Canvas;
+import lib.render.Texture;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.lwjgl.opengl.GL11.GL_LINEAR;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MAG_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MIN_FILTER;
+
+/**
+ * Renders a scalar field over a rectangle of the plane into a texture, as a heatmap through a {@link ColorMap}. The image is
+ * split into square tiles that are evaluated in parallel on a fork-join pool. Every tile is first rendered coarsely, one
+ * sample per 8x8 block, and then refined in halving steps down to one sample per pixel; {@link #update(long)} does as much
+ * of this as fits in a time budget, so a new field appears at once and sharpens over the following frames. Only tiles whose
+ * pixels changed are uploaded, with glTexSubImage2D.
+ * <p>
+ * Pixels are stored tile by tile in one direct buffer, so every tile uploads from a contiguous slice.
+ */
+public class FieldRenderer {
+    private static final int TILE = 32;
+    private static final int COARSEST = 8;
+    private final int width, height;
+    private final int tilesX, tilesY;
+    private final Texture texture;
+    private final ByteBuffer pixels;
+    private final long address;
+    private final float[] values;
+    private final int[] steps;
+    private final long[] hashes;
+    private ForkJoinPool executor = ForkJoinPool.commonPool();
+    private Field field;
+    private double xMin, yMin, xMax, yMax;
+    private double valueMin = -1, valueMax = 1;
+    private ColorMap colorMap = ColorMap.VIRIDIS;
+    private long evaluations;
+    private int uploadedTiles;
+
+    public FieldRenderer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.tilesX = (width + TILE - 1) / TILE;
+        this.tilesY = (height + TILE - 1) / TILE;
+        this.pixels = MemoryUtil.memAlloc(width * height * 4);
+        this.address = MemoryUtil.memAddress(pixels);
+        this.values = new float[width * height];
+        this.steps = new int[tilesX * tilesY];
+        this.hashes = new long[tilesX * tilesY];
+        Arrays.fill(this.hashes, Long.MIN_VALUE);
+        this.texture = Texture.create(width, height, null);
+        this.texture.setParameter(GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        this.texture.setParameter(GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+    }
+
+    /**
+     * Sets the field and the rectangle of the plane shown, with y pointing up. Changing either starts a new rendering.
+     */
+    public void setField(Field field, double xMin, double yMin, double xMax, double yMax) {
+        if (field != this.field || xMin != this.xMin || yMin != this.yMin || xMax != this.xMax || yMax != this.yMax) {
+            this.field = field;
+            this.xMin = xMin;
+            this.yMin = yMin;
+            this.xMax = xMax;
+            this.yMax = yMax;
+            invalidate();
+        }
+    }
+
+    /**
+     * Sets the values mapped to the ends of the color map.
+     */
+    public void setRange(double valueMin, double valueMax) {
+        if (valueMin != this.valueMin || valueMax != this.valueMax) {
+            this.valueMin = valueMin;
+            this.valueMax = valueMax;
+            invalidate();
+        }
+    }
+
+    public void setColorMap(ColorMap colorMap) {
+        if (colorMap != this.colorMap) {
+            this.colorMap = colorMap;
+            invalidate();
+        }
+    }
+
+    /**
+     * Starts rendering again from the coarsest level, for fields that change over time.
+     */
+    public void invalidate() {
+        Arrays.fill(steps, 0);
+    }
+
+    public void setExecutor(ForkJoinPool executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Renders and uploads tiles, coarsest first, until everything is at full resolution or the budget is used up. At least
+     * one pass of tiles is always rendered, so progress is made even with a budget of 0.
+     *
+     * @param budgetNanos time budget in nanoseconds
+     * @return true if the whole field is rendered at full resolution
+     */
+    public boolean update(long budgetNanos) {
+        uploadedTiles = 0;
+        if (field == null) {
+            return true;
+        }
+
+        long deadline = System.nanoTime() + budgetNanos;
+        int batch = Math.max(1, executor.getParallelism() * 2);
+        List<Integer> pending = new ArrayList<>(batch);
+
+        do {
+            int target = nextStep();
+            if (target == 0) {
+                return true;
+            }
+
+            pending.clear();
+            for (int tile = 0; tile < steps.length && pending.size() < batch; ++tile) {
+                if (steps[tile] == 0 ? target == COARSEST : steps[tile] == target * 2) {
+                    pending.add(tile);
+                }
+            }
+            render(pending, target);
+        } while (System.nanoTime() < deadline);
+
+        return nextStep() == 0;
+    }
+
+    /**
+     * @return the sample step the least refined tile is rendered at next, or 0 if all tiles are complete
+     */
+    private int nextStep() {
+        int coarsest = 0;
+        for (int step : steps) {
+            if (step == 0) {
+                return COARSEST;
+            }
+            coarsest = Math.max(coarsest, step);
+        }
+        return coarsest > 1 ? coarsest / 2 : 0;
+    }
+
+    private void render(List<Integer> tiles, int step) {
+        List<Callable<Boolean>> tasks = new ArrayList<>(tiles.size());
+        for (int tile : tiles) {
+            tasks.add(() -> renderTile(tile, step));
+        }
+
+        try {
+            List<Future<Boolean>> results = executor.invokeAll(tasks);
+            for (int i = 0; i < tiles.size(); ++i) {
+                int tile = tiles.get(i);
+                steps[tile] = step;
+                if (results.get(i).get()) {
+                    uploadTile(tile);
+                }
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException exc) {
+            throw new RuntimeException("Parallel field rendering failed", exc.getCause());
+        }
+    }
+
+    /**
+     * Evaluates one tile at the given step and writes its pixels.
+     *
+     * @return true if the pixels of the tile changed
+     */
+    private boolean renderTile(int tile, int step) {
+        int tileX = tile % tilesX * TILE, tileY = tile / tilesX * TILE;
+        int tileWidth = Math.min(TILE, width - tileX), tileHeight = Math.min(TILE, height - tileY);
+        boolean refining = steps[tile] == step * 2;
+        long base = address + (long) tileOffset(tile);
+        double scale = 1.0 / (valueMax - valueMin);
+        int samples = 0;
+
+        for (int y = 0; y < tileHeight; y += step) {
+            for (int x = 0; x < tileWidth; x += step) {
+                int index = (tileY + y) * width + tileX + x;
+                float value;
+                if (refining && x % (step * 2) == 0 && y % (step * 2) == 0) {
+                    value = values[index];
+                } else {
+                    double planeX = xMin + (tileX + x + 0.5) / width * (xMax - xMin);
+                    double planeY = yMax - (tileY + y + 0.5) / height * (yMax - yMin);
+                    value = (float) field.apply(planeX, planeY);
+                    values[index] = value;
+                    ++samples;
+                }
+
+                int color = BufferBuilder.packColor(colorMap.getColor((value - valueMin) * scale) | 0xff000000);
+                for (int dy = y; dy < Math.min(tileHeight, y + step); ++dy) {
+                    long row = base + (long) dy * tileWidth * 4;
+                    for (int dx = x; dx < Math.min(tileWidth, x + step); ++dx) {
+                        MemoryUtil.memPutInt(row + dx * 4L, color);
+                    }
+                }
+            }
+        }
+
+        int hash = 1;
+        for (int i = 0; i < tileWidth * tileHeight; ++i) {
+            hash = 31 * hash + MemoryUtil.memGetInt(base + i * 4L);
+        }
+        synchronized (this) {
+            evaluations += samples;
+        }
+        if (hash == hashes[tile]) {
+            return false;
+        }
+        hashes[tile] = hash;
+        return true;
+    }
+
+    private int tileOffset(int tile) {
+        int tileY = tile / tilesX * TILE;
+        int tileX = tile % tilesX * TILE;
+        return (tileY * width + tileX * Math.min(TILE, height - tileY)) * 4;
+    }
+
+    private void uploadTile(int tile) {
+        int tileX = tile % tilesX * TILE, tileY = tile / tilesX * TILE;
+        int tileWidth = Math.min(TILE, width - tileX), tileHeight = Math.min(TILE, height - tileY);
+        int offset = tileOffset(tile);
+        pixels.limit(offset + tileWidth * tileHeight * 4).position(offset);
+        texture.bind();
+        texture.uploadRegion(tileX, tileY, tileWidth, tileHeight, pixels);
+        pixels.clear();
+        ++uploadedTiles;
+    }
+
+    public void draw(Canvas canvas, double x, double y, double width, double height) {
+        canvas.drawTexture(texture, x, y, width, height, width, height);
+    }
+
+    public Texture getTexture() {
+        return texture;
+    }
+
+    /**
+     * @return true once every tile is rendered at full resolution
+     */
+    public boolean isComplete() {
+        return nextStep() == 0;
+    }
+
+    /**
+     * @return the total number of field evaluations
+     */
+    public synchronized long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return the number of tiles uploaded by the last {@link #update}
+     */
+    public int getUploadedTiles() {
+        return uploadedTiles;
+    }
+
+    public void delete() {
+        MemoryUtil.memFree(pixels);
+    }
+}
@@ -0,0 +1,46 @@
+package lib.render.plot;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A dataset reading raw 8 byte doubles from a memory-mapped file. The file is mapped in chunks of 2^27 samples, so it may
+ * be larger than 2 GB; pages are loaded by the OS as they are touched.
+ */
+public class MappedDataset implements Dataset {
+    private static final int SHIFT = 27;
+    private static final long MASK = (1L << SHIFT) - 1;
+    private final DoubleBuffer[] chunks;
+    private final long size;
+
+    public MappedDataset(Path path) throws IOException {
+        this(path, ByteOrder.nativeOrder());
+    }
+
+    public MappedDataset(Path path, ByteOrder order) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size() / Double.BYTES;
+            chunks = new DoubleBuffer[(int) ((size + MASK) >>> SHIFT)];
+
+            for (int i = 0; i < chunks.length; ++i) {
+                long first = (long) i << SHIFT;
+                long length = Math.min(MASK + 1, size - first) * Double.BYTES;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, first * Double.BYTES, length).order(order).asDoubleBuffer();
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public double get(long index) {
+        return chunks[(int) (index >>> SHIFT)].get((int) (index & MASK));
+    }
+}
@@ -0,0 +1,166 @@
+package lib.render.plot;
+
+import java.util.Arrays;
+
+/**
+ * Per-level minimum, maximum and sum of a dataset. Level 0 is the dataset itself; level 1 summarizes blocks of 16 samples and
+ * every further level blocks of 4 entries of the level below. The pyramid takes about a quarter of the dataset's memory
+ * and lets any range be summarized per pixel column by reading a handful of blocks per column, however many samples the
+ * range holds.
+ * <p>
+ * NaN samples are ignored by the minimum and maximum, but make the mean of their blocks NaN.
+ */
+public class MinMaxPyramid {
+    public static final int BASE_BLOCK = 16;
+    public static final int FACTOR = 4;
+    private final Dataset dataset;
+    private final long size;
+    private final double[][] min;
+    private final double[][] max;
+    private final double[][] sum;
+
+    public MinMaxPyramid(Dataset dataset) {
+        this.dataset = dataset;
+        this.size = dataset.size();
+
+        int levels = 1;
+        for (long blocks = size; blocks > 1; ++levels) {
+            blocks = (blocks + (levels == 1 ? BASE_BLOCK : FACTOR) - 1) / (levels == 1 ? BASE_BLOCK : FACTOR);
+        }
+        min = new double[levels][];
+        max = new double[levels][];
+        sum = new double[levels][];
+
+        for (int level = 1; level < levels; ++level) {
+            build(level);
+        }
+    }
+
+    private void build(int level) {
+        long blockSize = getBlockSize(level);
+        int blocks = (int) ((size + blockSize - 1) / blockSize);
+        double[] levelMin = min[level] = new double[blocks];
+        double[] levelMax = max[level] = new double[blocks];
+        double[] levelSum = sum[level] = new double[blocks];
+
+        if (level == 1) {
+            for (int block = 0; block < blocks; ++block) {
+                long from = (long) block * BASE_BLOCK;
+                long to = Math.min(size, from + BASE_BLOCK);
+                double blockMin = Double.POSITIVE_INFINITY, blockMax = Double.NEGATIVE_INFINITY, blockSum = 0;
+                for (long i = from; i < to; ++i) {
+                    double value = dataset.get(i);
+                    if (value < blockMin) {
+                        blockMin = value;
+                    }
+                    if (value > blockMax) {
+                        blockMax = value;
+                    }
+                    blockSum += value;
+                }
+                levelMin[block] = blockMin;
+                levelMax[block] = blockMax;
+                levelSum[block] = blockSum;
+            }
+        } else {
+            double[] lowerMin = min[level - 1], lowerMax = max[level - 1], lowerSum = sum[level - 1];
+            for (int block = 0; block < blocks; ++block) {
+                int from = block * FACTOR;
+                int to = Math.min(lowerMin.length, from + FACTOR);
+                double blockMin = Double.POSITIVE_INFINITY, blockMax = Double.NEGATIVE_INFINITY, blockSum = 0;
+                for (int i = from; i < to; ++i) {
+                    blockMin = Math.min(blockMin, lowerMin[i]);
+                    blockMax = Math.max(blockMax, lowerMax[i]);
+                    blockSum += lowerSum[i];
+                }
+                levelMin[block] = blockMin;
+                levelMax[block] = blockMax;
+                levelSum[block] = blockSum;
+            }
+        }
+    }
+
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int getLevelCount() {
+        return min.length;
+    }
+
+    /**
+     * @return the number of samples summarized by one block of the level
+     */
+    public static long getBlockSize(int level) {
+        return level == 0 ? 1 : BASE_BLOCK * (1L << (2 * (level - 1)));
+    }
+
+    /**
+     * @return the coarsest level whose blocks hold at most the given number of samples
+     */
+    public int getLevel(double samplesPerColumn) {
+        int level = 0;
+        while (level + 1 < min.length && getBlockSize(level + 1) <= samplesPerColumn) {
+            ++level;
+        }
+        return level;
+    }
+
+    /**
+     * Summarizes the samples [from, to) split evenly into columns. Column boundaries are snapped to blocks of the level
+     * chosen by {@link #getLevel}, which hold at most one column of samples, so each column reads only a few blocks.
+     *
+     * @param mean receives the mean per column, or null if not needed
+     */
+    public void query(long from, long to, int columns, double[] columnMin, double[] columnMax, double[] mean) {
+        from = Math.max(0, from);
+        to = Math.min(size, to);
+        if (to <= from) {
+            Arrays.fill(columnMin, 0, columns, Double.NaN);
+            Arrays.fill(columnMax, 0, columns, Double.NaN);
+            if (mean != null) {
+                Arrays.fill(mean, 0, columns, Double.NaN);
+            }
+            return;
+        }
+        double samplesPerColumn = (double) (to - from) / columns;
+        int level = getLevel(samplesPerColumn);
+        long blockSize = getBlockSize(level);
+
+        for (int column = 0; column < columns; ++column) {
+            long start = from + (long) (column * samplesPerColumn);
+            long end = Math.max(start + 1, from + (long) ((column + 1) * samplesPerColumn));
+            long firstBlock = start / blockSize;
+            long lastBlock = Math.max(firstBlock + 1, Math.min((end + blockSize - 1) / blockSize, (size + blockSize - 1) / blockSize));
+            double blockMin = Double.POSITIVE_INFINITY, blockMax = Double.NEGATIVE_INFINITY, blockSum = 0;
+
+            for (long block = firstBlock; block < lastBlock; ++block) {
+                if (level == 0) {
+                    double value = dataset.get(block);
+                    if (value < blockMin) {
+                        blockMin = value;
+                    }
+                    if (value > blockMax) {
+                        blockMax = value;
+                    }
+                    blockSum += value;
+                } else {
+                    blockMin = Math.min(blockMin, min[level][(int) block]);
+                    blockMax = Math.max(blockMax, max[level][(int) block]);
+                    blockSum += sum[level][(int) block];
+                }
+            }
+
+            columnMin[column] = blockMin;
+            columnMax[column] = blockMax;
+            if (mean != null) {
+                long samples = Math.min(size, lastBlock * blockSize) - firstBlock * blockSize;
+                mean[column] = blockSum / samples;
+            }
+        }
+    }
+}
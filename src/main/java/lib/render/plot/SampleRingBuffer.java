@@ -0,0 +1,140 @@
+package lib.render.plot;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer, single-consumer queue of (time, value) samples. One thread may call {@link #offer}, typically
+ * a sensor or simulation thread, and one other thread may call {@link #drain}, typically the render thread. Samples are
+ * kept in primitive arrays, so neither side allocates. When the buffer is full new samples are dropped and counted.
+ * <p>
+ * Each sample is stamped with {@link System#nanoTime()} when offered, so the consumer can report how long samples waited.
+ */
+public class SampleRingBuffer {
+    private final int mask;
+    private final double[] times;
+    private final double[] values;
+    private final long[] stamps;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private long cachedTail;
+    private long cachedHead;
+    private volatile long dropped;
+    private long maxLatency, totalLatency, consumed;
+
+    /**
+     * @param capacity maximum number of queued samples, rounded up to a power of two
+     */
+    public SampleRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        times = new double[size];
+        values = new double[size];
+        stamps = new long[size];
+    }
+
+    /**
+     * Queues a sample. Must only be called from the producer thread.
+     *
+     * @return false if the buffer was full and the sample was dropped
+     */
+    public boolean offer(double time, double value) {
+        long position = head.get();
+        if (position - cachedTail > mask) {
+            cachedTail = tail.get();
+            if (position - cachedTail > mask) {
+                dropped = dropped + 1;
+                return false;
+            }
+        }
+
+        int index = (int) position & mask;
+        times[index] = time;
+        values[index] = value;
+        stamps[index] = System.nanoTime();
+        head.lazySet(position + 1);
+        return true;
+    }
+
+    /**
+     * Passes all queued samples to the consumer, oldest first. Must only be called from the consumer thread.
+     *
+     * @return the number of samples consumed
+     */
+    public int drain(SampleConsumer consumer) {
+        long position = tail.get();
+        if (position == cachedHead) {
+            cachedHead = head.get();
+            if (position == cachedHead) {
+                return 0;
+            }
+        }
+
+        long now = System.nanoTime();
+        long end = cachedHead;
+        for (long i = position; i < end; ++i) {
+            int index = (int) i & mask;
+            long latency = now - stamps[index];
+            if (latency > maxLatency) {
+                maxLatency = latency;
+            }
+            totalLatency += latency;
+            consumer.accept(times[index], values[index]);
+        }
+
+        consumed += end - position;
+        tail.lazySet(end);
+        return (int) (end - position);
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the number of queued samples; only an estimate while the other side is running
+     */
+    public int size() {
+        return (int) (head.get() - tail.get());
+    }
+
+    /**
+     * @return the number of samples dropped because the buffer was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return the number of samples drained so far
+     */
+    public long getConsumed() {
+        return consumed;
+    }
+
+    /**
+     * @return the longest time in nanoseconds a drained sample waited in the buffer
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    /**
+     * @return the mean time in nanoseconds drained samples waited in the buffer
+     */
+    public double getMeanLatency() {
+        return consumed == 0 ? 0 : (double) totalLatency / consumed;
+    }
+
+    /**
+     * Resets the latency statistics. Must only be called from the consumer thread.
+     */
+    public void resetLatency() {
+        maxLatency = 0;
+        totalLatency = 0;
+        consumed = 0;
+    }
+
+    public interface SampleConsumer {
+        void accept(double time, double value);
+    }
+}
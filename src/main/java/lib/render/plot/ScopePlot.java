@@ -0,0 +1,186 @@
+package lib.render.plot;
+
+import lib.buffer.BufferBuilder;
+import lib.render.Canvas;
+import lib.vertex.DefaultVertexFormats;
+import lib.vertex.VertexBuffer;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static lib.gl.RenderSystem.gl;
+
+/**
+ * Oscilloscope-style plot of the last timeSpan seconds of a {@link SampleRingBuffer}, scrolling to the left as new samples
+ * arrive. Vertices live in a ring of slots in a GPU buffer: each frame only the newly drained samples are written with
+ * glBufferSubData, and scrolling is a translation, so a frame's cost depends on the number of new samples only.
+ * <p>
+ * Sample times must not decrease. The segment entering the plot from the left may extend past its left edge by up to one
+ * sample interval.
+ */
+public class ScopePlot {
+    private static final int STRIDE = 16;
+    /**
+     * Pixels the trace may scroll from the base time before the window is uploaded again relative to a new base. Float
+     * positions below 2^16 are exact to 1/128 px.
+     */
+    private static final double REBASE_DISTANCE = 1 << 16;
+    private final SampleRingBuffer source;
+    private final double x, y, width, height;
+    private final double timeSpan, minValue, maxValue;
+    private final int color;
+    private final int slots;
+    private final double[] slotTimes, slotValues;
+    private final SampleRingBuffer.SampleConsumer consumer = this::add;
+    private VertexBuffer buffer;
+    private ByteBuffer staging;
+    private long first, uploaded, next;
+    private double baseTime, latestTime;
+    private int uploadedVertices;
+
+    /**
+     * @param maxSamples the maximum number of samples kept in view
+     */
+    public ScopePlot(SampleRingBuffer source, double x, double y, double width, double height, double timeSpan, double minValue, double maxValue, int color, int maxSamples) {
+        this.source = source;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.timeSpan = timeSpan;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        this.color = color;
+        this.slots = maxSamples;
+        this.slotTimes = new double[maxSamples];
+        this.slotValues = new double[maxSamples];
+    }
+
+    /**
+     * Drains the new samples from the source, uploads their vertices and draws the plot.
+     */
+    public void draw(Canvas canvas, double thickness) {
+        if (buffer == null) {
+            buffer = new VertexBuffer(DefaultVertexFormats.POSITION_COLOR);
+            buffer.allocate(slots + 1, GL15.GL_DYNAMIC_DRAW);
+            staging = MemoryUtil.memAlloc((slots + 1) * STRIDE);
+        }
+
+        uploadedVertices = 0;
+        source.drain(consumer);
+        while (next - first > 1 && slotTimes[slot(first + 1)] < latestTime - timeSpan) {
+            ++first;
+        }
+
+        if ((latestTime - baseTime) * width / timeSpan > REBASE_DISTANCE) {
+            baseTime = slotTimes[slot(first)];
+            uploaded = first;
+        }
+        upload();
+
+        int count = (int) (next - first);
+        if (count < 2) {
+            return;
+        }
+
+        canvas.getTessellator().flush();
+        gl().glDisable(GL11.GL_TEXTURE_2D);
+        gl().glLineWidth((float) thickness);
+        gl().glPushMatrix();
+        gl().glTranslatef((float) (x + width - (latestTime - baseTime) * width / timeSpan), 0, 0);
+
+        int start = slot(first);
+        if (start + count <= slots) {
+            buffer.draw(GL11.GL_LINE_STRIP, start, count);
+        } else {
+            buffer.draw(GL11.GL_LINE_STRIP, start, slots - start + 1);
+            buffer.draw(GL11.GL_LINE_STRIP, 0, count - (slots - start));
+        }
+
+        gl().glPopMatrix();
+        gl().glLineWidth(1);
+    }
+
+    private void add(double time, double value) {
+        int index = slot(next);
+        slotTimes[index] = time;
+        slotValues[index] = value;
+        latestTime = time;
+        if (next == 0) {
+            baseTime = time;
+        }
+        ++next;
+        if (next - first > slots) {
+            first = next - slots;
+        }
+    }
+
+    /**
+     * Writes the vertices of the samples [uploaded, next) into their slots, in at most two contiguous ranges.
+     */
+    private void upload() {
+        uploaded = Math.max(uploaded, first);
+        while (uploaded < next) {
+            int start = slot(uploaded);
+            int count = (int) Math.min(next - uploaded, slots - start);
+            long address = MemoryUtil.memAddress(staging);
+
+            for (int i = 0; i < count; ++i) {
+                putVertex(address + (long) i * STRIDE, start + i);
+            }
+            staging.position(0).limit(count * STRIDE);
+            buffer.bufferSubData(start, staging);
+
+            if (start == 0) {
+                putVertex(address, 0);
+                staging.position(0).limit(STRIDE);
+                buffer.bufferSubData(slots, staging);
+            }
+            staging.clear();
+            uploaded += count;
+            uploadedVertices += count;
+        }
+    }
+
+    private void putVertex(long pointer, int slot) {
+        double vertexX = (slotTimes[slot] - baseTime) * width / timeSpan;
+        double vertexY = y + height * (1 - (slotValues[slot] - minValue) / (maxValue - minValue));
+        MemoryUtil.memPutFloat(pointer, (float) vertexX);
+        MemoryUtil.memPutFloat(pointer + 4, (float) vertexY);
+        MemoryUtil.memPutFloat(pointer + 8, 0);
+        MemoryUtil.memPutInt(pointer + 12, BufferBuilder.packColor(color));
+    }
+
+    private int slot(long sample) {
+        return (int) (sample % slots);
+    }
+
+    /**
+     * @return the number of vertices written to the GPU by the last draw
+     */
+    public int getUploadedVertices() {
+        return uploadedVertices;
+    }
+
+    /**
+     * @return the number of samples currently in view
+     */
+    public int getSampleCount() {
+        return (int) (next - first);
+    }
+
+    public SampleRingBuffer getSource() {
+        return source;
+    }
+
+    public void delete() {
+        if (buffer != null) {
+            buffer.deleteGlBuffers();
+            MemoryUtil.memFree(staging);
+            buffer = null;
+            staging = null;
+        }
+    }
+}
@@ -13,6 +13,8 @@ import java.nio.IntBuffer;
 import java.util.List;
 import java.util.*;
 
+import static lib.gl.RenderSystem.gl;
+
 /**
  * The GlyphCache class is responsible for caching pre-rendered images of every glyph using OpenGL textures. This class is also
  * responsible for selecting the proper fonts to render each glyph, since Java's own "SansSerif" logical font does not always
@@ -473,8 +475,8 @@ public class GlyphCache {
             /* Load imageBuffer with pixel data ready for transfer to OpenGL texture */
             updateImageBuffer(dirty.x, dirty.y, dirty.width, dirty.height);
 
-            GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureName);
-            GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, dirty.x, dirty.y, dirty.width, dirty.height,
+            gl().glBindTexture(GL11.GL_TEXTURE_2D, textureName);
+            gl().glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, dirty.x, dirty.y, dirty.width, dirty.height,
                     GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, imageBuffer);
         }
     }
@@ -524,7 +526,7 @@ public class GlyphCache {
         glyphCacheGraphics.clearRect(0, 0, TEXTURE_WIDTH, TEXTURE_HEIGHT);
 
         /* Allocate new OpenGL texture */
-        textureName = GL11.glGenTextures();
+        textureName = gl().glGenTextures();
 
         /* Load imageBuffer with pixel data ready for transfer to OpenGL texture */
         updateImageBuffer(0, 0, TEXTURE_WIDTH, TEXTURE_HEIGHT);
@@ -533,13 +535,13 @@ public class GlyphCache {
          * Initialize texture with the now cleared BufferedImage. Using a texture with GL_ALPHA8 internal format may result in
          * faster rendering since the GPU has to only fetch 1 byte per texel instead of 4 with a regular RGBA texture.
          */
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureName);
-        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_ALPHA8, TEXTURE_WIDTH, TEXTURE_HEIGHT, 0,
+        gl().glBindTexture(GL11.GL_TEXTURE_2D, textureName);
+        gl().glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_ALPHA8, TEXTURE_WIDTH, TEXTURE_HEIGHT, 0,
                 GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, imageBuffer);
 
         /* Explicitly disable mipmap support because updateTexture() will only update the base level 0 */
-        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
-        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+        gl().glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+        gl().glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
     }
 
     /**
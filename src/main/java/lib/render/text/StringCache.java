@@ -15,6 +15,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.WeakHashMap;
 
+import static lib.gl.RenderSystem.gl;
+
 /**
  * The StringCache is the public interface for rendering of all Unicode strings using OpenType fonts. It caches the glyph layout
  * of individual strings, and it uses a GlyphCache instance to cache the pre-rendered images for individual glyphs. Once a string
@@ -152,7 +154,7 @@ public class StringCache {
         }
 
         // Fix for what RenderLivingBase#setBrightness does
-        GL11.glTexEnvi(GL11.GL_TEXTURE_ENV, GL11.GL_TEXTURE_ENV_MODE, GL11.GL_MODULATE);
+        gl().glTexEnvi(GL11.GL_TEXTURE_ENV, GL11.GL_TEXTURE_ENV_MODE, GL11.GL_MODULATE);
 
         /* Make sure the entire string is cached before rendering and return its glyph representation */
         Entry entry = cacheString(str);
@@ -172,12 +174,11 @@ public class StringCache {
         */
 
         if (antiAliasEnabled) {
-            GL11.glEnable(GL11.GL_BLEND);
-            GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+            gl().glEnable(GL11.GL_BLEND);
+            gl().glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
         }
 
-        Tessellator tessellator = Tessellator.DEFAULT;
-        BufferBuilder buffer = tessellator.getBuffer();
+        Tessellator tessellator = canvas.getTessellator();
 
         /* The currently active font style is needed to select the proper ASCII digit style for fast replacement */
         int fontStyle = Font.PLAIN;
@@ -220,18 +221,10 @@ public class StringCache {
             double y1 = startY + glyph.y / 2F;
             double y2 = startY + (glyph.y + texture.height) / 2F;
 
-            int a = color >> 24 & 0xff;
-            int r = color >> 16 & 0xff;
-            int g = color >> 8 & 0xff;
-            int b = color & 0xff;
-
-            GL11.glEnable(GL11.GL_TEXTURE_2D);
-            GL11.glBindTexture(GL11.GL_TEXTURE_2D, texture.textureName);
-            buffer.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR);
-            buffer.pos(x1, y1, 0).tex(texture.u1, texture.v1).color(r, g, b, a).endVertex();
-            buffer.pos(x1, y2, 0).tex(texture.u1, texture.v2).color(r, g, b, a).endVertex();
-            buffer.pos(x2, y2, 0).tex(texture.u2, texture.v2).color(r, g, b, a).endVertex();
-            buffer.pos(x2, y1, 0).tex(texture.u2, texture.v1).color(r, g, b, a).endVertex();
+            tessellator.setTextureEnabled(true);
+            tessellator.bindTexture(texture.textureName);
+            BufferBuilder buffer = tessellator.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR);
+            buffer.quad(x1, y1, x2 - x1, y2 - y1, texture.u1, texture.v1, texture.u2, texture.v2, color);
             tessellator.draw();
         }
 
@@ -241,8 +234,8 @@ public class StringCache {
 
             /* Use initial color passed to renderString(); disable texturing to draw solid color lines */
             color = initialColor;
-            GL11.glDisable(GL11.GL_TEXTURE_2D);
-            buffer.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_COLOR);
+            tessellator.setTextureEnabled(false);
+            BufferBuilder buffer = tessellator.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_COLOR);
 
             for (int glyphIndex = 0, colorIndex = 0; glyphIndex < entry.glyphs.length; glyphIndex++) {
                 /*
@@ -262,11 +255,6 @@ public class StringCache {
                 /* The strike/underlines are drawn beyond the glyph's width to include the extra space between glyphs */
                 int glyphSpace = glyph.advance - glyph.texture.width;
 
-                int a = color >> 24 & 0xff;
-                int r = color >> 16 & 0xff;
-                int g = color >> 8 & 0xff;
-                int b = color & 0xff;
-
                 /* Draw underline under glyph if the style is enabled */
                 if ((renderStyle & ColorCode.UNDERLINE) != 0) {
                     /* The divide by 2F is needed to align with the scaled GUI coordinate system; startX/startY are already scaled */
@@ -275,10 +263,7 @@ public class StringCache {
                     double y1 = startY + UNDERLINE_OFFSET / 2F;
                     double y2 = startY + (UNDERLINE_OFFSET + UNDERLINE_THICKNESS) / 2F;
 
-                    buffer.pos(x1, y1, 0).color(r, g, b, a).endVertex();
-                    buffer.pos(x1, y2, 0).color(r, g, b, a).endVertex();
-                    buffer.pos(x2, y2, 0).color(r, g, b, a).endVertex();
-                    buffer.pos(x2, y1, 0).color(r, g, b, a).endVertex();
+                    buffer.quad(x1, y1, x2 - x1, y2 - y1, color);
                 }
 
                 /* Draw strikethrough in the middle of glyph if the style is enabled */
@@ -289,16 +274,13 @@ public class StringCache {
                     double y1 = startY + STRIKETHROUGH_OFFSET / 2F;
                     double y2 = startY + (STRIKETHROUGH_OFFSET + STRIKETHROUGH_THICKNESS) / 2F;
 
-                    buffer.pos(x1, y1, 0).color(r, g, b, a).endVertex();
-                    buffer.pos(x1, y2, 0).color(r, g, b, a).endVertex();
-                    buffer.pos(x2, y2, 0).color(r, g, b, a).endVertex();
-                    buffer.pos(x2, y1, 0).color(r, g, b, a).endVertex();
+                    buffer.quad(x1, y1, x2 - x1, y2 - y1, color);
                 }
             }
 
             /* Finish drawing the last strikethrough/underline segments */
             tessellator.draw();
-            GL11.glEnable(GL11.GL_TEXTURE_2D);
+            tessellator.setTextureEnabled(true);
         }
 
 
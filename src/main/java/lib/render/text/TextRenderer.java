@@ -6,6 +6,8 @@ import org.lwjgl.opengl.GL11;
 import java.util.Arrays;
 import java.util.List;
 
+import static lib.gl.RenderSystem.gl;
+
 public class TextRenderer {
     private final int[] colorCode = new int[32];
     public final int fontHeight;
@@ -74,7 +76,7 @@ public class TextRenderer {
     }
 
     public int drawString(Canvas canvas, String text, double x, double y, int color, boolean dropShadow) {
-        GL11.glEnable(GL11.GL_ALPHA_TEST);
+        gl().glEnable(GL11.GL_ALPHA_TEST);
         int i;
 
         if (dropShadow) {
@@ -0,0 +1,58 @@
+package lib.vertex;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.IntBuffer;
+
+import static lib.gl.RenderSystem.gl;
+
+/**
+ * Shared element buffer holding the indices 0, 1, 2, 2, 3, 0 for consecutive quads, so quad streams can be drawn as
+ * GL_TRIANGLES with glDrawElements instead of the deprecated GL_QUADS. The buffer is created on first use and grown to the
+ * next power of two quads whenever a larger draw needs it.
+ */
+public class QuadIndexBuffer {
+    private static int buffer;
+    private static int quads;
+
+    public static void bind(int quadCount) {
+        if (buffer == 0) {
+            buffer = gl().glGenBuffers();
+        }
+        gl().glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, buffer);
+
+        if (quadCount > quads) {
+            int capacity = Math.max(256, Integer.highestOneBit(quadCount - 1) << 1);
+            IntBuffer indices = MemoryUtil.memAllocInt(capacity * 6);
+
+            for (int quad = 0; quad < capacity; ++quad) {
+                int vertex = quad * 4;
+                indices.put(vertex).put(vertex + 1).put(vertex + 2);
+                indices.put(vertex + 2).put(vertex + 3).put(vertex);
+            }
+
+            indices.flip();
+            gl().glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indices, GL15.GL_STATIC_DRAW);
+            MemoryUtil.memFree(indices);
+            quads = capacity;
+        }
+    }
+
+    public static void unbind() {
+        gl().glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Draws the given number of quad vertices, starting at the first vertex of the current attribute pointers.
+     */
+    public static void drawQuads(int vertexCount) {
+        int quadCount = vertexCount / 4;
+        if (quadCount > 0) {
+            bind(quadCount);
+            gl().glDrawElements(GL11.GL_TRIANGLES, quadCount * 6, GL11.GL_UNSIGNED_INT, 0L);
+            unbind();
+        }
+    }
+}
@@ -4,15 +4,20 @@ import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
 
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import static lib.gl.RenderSystem.gl;
 
 public class VertexBuffer {
     private final VertexFormat format;
     private int buffer;
     private int count;
+    private int indexBuffer;
+    private int indexCount;
 
     public VertexBuffer(VertexFormat format) {
         this.format = format;
-        this.buffer = GL15.glGenBuffers();
+        this.buffer = gl().glGenBuffers();
     }
 
     public VertexFormat getFormat() {
@@ -20,28 +25,116 @@ public class VertexBuffer {
     }
 
     public void bindBuffer() {
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.buffer);
+        gl().glBindBuffer(GL15.GL_ARRAY_BUFFER, this.buffer);
     }
 
     public void bufferData(ByteBuffer data) {
         bindBuffer();
-        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, data, 35044);
+        gl().glBufferData(GL15.GL_ARRAY_BUFFER, data, 35044);
         unbindBuffer();
         count = data.limit() / format.getByteSize();
     }
 
+    /**
+     * Stores unsigned int indices for this buffer; it is drawn with glDrawElements from then on.
+     */
+    public void bufferIndices(IntBuffer indices) {
+        if (indexBuffer == 0) {
+            indexBuffer = gl().glGenBuffers();
+        }
+        gl().glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        gl().glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indices, GL15.GL_STATIC_DRAW);
+        gl().glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+        indexCount = indices.remaining();
+    }
+
     public void drawArrays(int mode) {
-        GL11.glDrawArrays(mode, 0, count);
+        if (indexBuffer != 0) {
+            gl().glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+            gl().glDrawElements(mode, indexCount, GL11.GL_UNSIGNED_INT, 0L);
+            gl().glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+        } else if (mode == GL11.GL_QUADS) {
+            QuadIndexBuffer.drawQuads(count);
+        } else {
+            gl().glDrawArrays(mode, 0, count);
+        }
+    }
+
+    /**
+     * Binds the buffer, sets up the attribute pointers of its format and draws all of its vertices.
+     */
+    public void draw(int mode) {
+        bindBuffer();
+        setupPointers();
+        drawArrays(mode);
+        clearPointers();
+        unbindBuffer();
+    }
+
+    /**
+     * Draws count vertices starting at first with glDrawArrays, ignoring any indices.
+     */
+    public void draw(int mode, int first, int count) {
+        bindBuffer();
+        setupPointers();
+        gl().glDrawArrays(mode, first, count);
+        clearPointers();
+        unbindBuffer();
+    }
+
+    private void setupPointers() {
+        int stride = format.getByteSize();
+        for (int i = 0; i < format.getElementCount(); ++i) {
+            format.getElement(i).getUsage().preDraw(format, i, stride, 0L);
+        }
+    }
+
+    private void clearPointers() {
+        int stride = format.getByteSize();
+        for (int i = 0; i < format.getElementCount(); ++i) {
+            format.getElement(i).getUsage().postDraw(format, i, stride, null);
+        }
+    }
+
+    /**
+     * Allocates uninitialized storage for the given number of vertices, to be filled with {@link #bufferSubData}.
+     */
+    public void allocate(int vertices, int usage) {
+        bindBuffer();
+        gl().glBufferData(GL15.GL_ARRAY_BUFFER, (long) vertices * format.getByteSize(), usage);
+        unbindBuffer();
+        count = vertices;
+    }
+
+    /**
+     * Replaces the vertices starting at firstVertex with the data, leaving the rest of the buffer untouched.
+     */
+    public void bufferSubData(int firstVertex, ByteBuffer data) {
+        bindBuffer();
+        gl().glBufferSubData(GL15.GL_ARRAY_BUFFER, (long) firstVertex * format.getByteSize(), data);
+        unbindBuffer();
+    }
+
+    public int getVertexCount() {
+        return count;
+    }
+
+    public int getByteSize() {
+        return count * format.getByteSize();
     }
 
     public void unbindBuffer() {
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        gl().glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
     }
 
     public void deleteGlBuffers() {
         if (buffer >= 0) {
-            GL15.glDeleteBuffers(buffer);
+            gl().glDeleteBuffers(buffer);
             buffer = -1;
         }
+        if (indexBuffer != 0) {
+            gl().glDeleteBuffers(indexBuffer);
+            indexBuffer = 0;
+        }
     }
 }
\ No newline at end of file
@@ -2,10 +2,12 @@ package lib.vertex;
 
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL13;
-import org.lwjgl.opengl.GL20;
+import org.lwjgl.system.MemoryUtil;
 
 import java.util.logging.Logger;
 
+import static lib.gl.RenderSystem.gl;
+
 public class VertexFormatElement {
     private static final Logger LOGGER = Logger.getLogger("VertexFormatElement");
     private final ElementType type;
@@ -135,37 +137,45 @@ public class VertexFormatElement {
         }
 
         public void preDraw(VertexFormat format, int element, int stride, java.nio.ByteBuffer buffer) {
+            preDraw(format, element, stride, MemoryUtil.memAddress(buffer, 0));
+        }
+
+        /**
+         * Sets up the attribute pointer relative to the start of the vertex data. The pointer is an address in client memory,
+         * or an offset into the bound GL_ARRAY_BUFFER when one is bound.
+         */
+        public void preDraw(VertexFormat format, int element, int stride, long pointer) {
             VertexFormatElement attr = format.getElement(element);
             int count = attr.getElementCount();
             int constant = attr.getType().getGlConstant();
-            buffer.position(format.getOffset(element));
+            pointer += format.getOffset(element);
             switch (this) {
                 case POSITION:
-                    GL11.glVertexPointer(count, constant, stride, buffer);
-                    GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+                    gl().glVertexPointer(count, constant, stride, pointer);
+                    gl().glEnableClientState(GL11.GL_VERTEX_ARRAY);
                     break;
                 case NORMAL:
                     if (count != 3) {
                         throw new IllegalArgumentException("Normal attribute should have the size 3: " + attr);
                     }
-                    GL11.glNormalPointer(constant, stride, buffer);
-                    GL11.glEnableClientState(GL11.GL_NORMAL_ARRAY);;
+                    gl().glNormalPointer(constant, stride, pointer);
+                    gl().glEnableClientState(GL11.GL_NORMAL_ARRAY);;
                     break;
                 case COLOR:
-                    GL11.glColorPointer(count, constant, stride, buffer);
-                    GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
+                    gl().glColorPointer(count, constant, stride, pointer);
+                    gl().glEnableClientState(GL11.GL_COLOR_ARRAY);
                     break;
                 case UV:
-                    GL13.glActiveTexture(GL13.GL_TEXTURE0 + attr.getIndex());
-                    GL11.glTexCoordPointer(count, constant, stride, buffer);
-                    GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
-                    GL13.glActiveTexture(GL13.GL_TEXTURE0);
+                    gl().glActiveTexture(GL13.GL_TEXTURE0 + attr.getIndex());
+                    gl().glTexCoordPointer(count, constant, stride, pointer);
+                    gl().glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+                    gl().glActiveTexture(GL13.GL_TEXTURE0);
                     break;
                 case PADDING:
                     break;
                 case GENERIC:
-                    GL20.glEnableVertexAttribArray(attr.getIndex());
-                    GL20.glVertexAttribPointer(attr.getIndex(), count, constant, false, stride, buffer);
+                    gl().glEnableVertexAttribArray(attr.getIndex());
+                    gl().glVertexAttribPointer(attr.getIndex(), count, constant, false, stride, pointer);
                     break;
                 default:
                     throw new RuntimeException("Unimplemented attribute upload: " + getDisplayName());
@@ -176,23 +186,23 @@ public class VertexFormatElement {
             VertexFormatElement attr = format.getElement(element);
             switch (this) {
                 case POSITION:
-                    GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+                    gl().glDisableClientState(GL11.GL_VERTEX_ARRAY);
                     break;
                 case NORMAL:
-                    GL11.glDisableClientState(GL11.GL_NORMAL_ARRAY);
+                    gl().glDisableClientState(GL11.GL_NORMAL_ARRAY);
                     break;
                 case COLOR:
-                    GL11.glDisableClientState(GL11.GL_COLOR_ARRAY);
+                    gl().glDisableClientState(GL11.GL_COLOR_ARRAY);
                     break;
                 case UV:
-                    GL13.glActiveTexture(GL13.GL_TEXTURE0 + attr.getIndex());
-                    GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
-                    GL13.glActiveTexture(GL13.GL_TEXTURE0);
+                    gl().glActiveTexture(GL13.GL_TEXTURE0 + attr.getIndex());
+                    gl().glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+                    gl().glActiveTexture(GL13.GL_TEXTURE0);
                     break;
                 case PADDING:
                     break;
                 case GENERIC:
-                    GL20.glDisableVertexAttribArray(attr.getIndex());
+                    gl().glDisableVertexAttribArray(attr.getIndex());
                     break;
                 default:
                     throw new RuntimeException("Unimplemented attribute upload: " + getDisplayName());